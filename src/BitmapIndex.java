@@ -0,0 +1,127 @@
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Битмап-индексы по признакам с небольшим числом различных значений:
+ * класс, категория ценности, блеск, спайность и генезис.
+ * Для каждого свёрнутого значения признака хранится {@link IdBitmap} с ID минералов,
+ * поэтому условие "равно" - это один битмап, "содержит" - объединение битмапов
+ * подходящих значений, а сочетание условий - пересечение битмапов.
+ * Ответы точные: проверять найденных минералов повторно не нужно.
+ */
+public class BitmapIndex {
+
+    public enum Attribute {
+        MINERAL_CLASS(Mineral::getFoldedMineralClass),
+        VALUE_CATEGORY(Mineral::getFoldedValueCategory),
+        LUSTER(Mineral::getFoldedLuster),
+        CLEAVAGE(Mineral::getFoldedCleavage),
+        GENESIS(Mineral::getFoldedGenesis);
+
+        private final Function<Mineral, String> extractor;
+
+        Attribute(Function<Mineral, String> extractor) {
+            this.extractor = extractor;
+        }
+
+        public String foldedValueOf(Mineral mineral) {
+            return extractor.apply(mineral);
+        }
+    }
+
+    private final Map<Attribute, Map<String, IdBitmap>> bitmaps;
+    // Битмапы, скопированные этой версией индекса; остальные общие с предыдущей
+    private final Map<Attribute, Set<String>> owned;
+
+    public BitmapIndex() {
+        bitmaps = new EnumMap<>(Attribute.class);
+        owned = new EnumMap<>(Attribute.class);
+        for (Attribute attribute : Attribute.values()) {
+            bitmaps.put(attribute, new HashMap<>());
+            owned.put(attribute, new HashSet<>());
+        }
+    }
+
+    private BitmapIndex(BitmapIndex other) {
+        bitmaps = new EnumMap<>(Attribute.class);
+        owned = new EnumMap<>(Attribute.class);
+        for (Attribute attribute : Attribute.values()) {
+            bitmaps.put(attribute, new HashMap<>(other.bitmaps.get(attribute)));
+            owned.put(attribute, new HashSet<>());
+        }
+    }
+
+    /**
+     * Копия для следующей версии снимка: битмапы общие до первого изменения
+     */
+    public BitmapIndex copy() {
+        return new BitmapIndex(this);
+    }
+
+    public void add(Mineral mineral) {
+        for (Attribute attribute : Attribute.values()) {
+            own(attribute, attribute.foldedValueOf(mineral)).add(mineral.getId());
+        }
+    }
+
+    public void remove(Mineral mineral) {
+        for (Attribute attribute : Attribute.values()) {
+            String value = attribute.foldedValueOf(mineral);
+            if (!bitmaps.get(attribute).containsKey(value)) {
+                continue;
+            }
+            IdBitmap bitmap = own(attribute, value);
+            bitmap.remove(mineral.getId());
+            if (bitmap.isEmpty()) {
+                bitmaps.get(attribute).remove(value);
+                owned.get(attribute).remove(value);
+            }
+        }
+    }
+
+    /**
+     * Минералы, у которых свёрнутое значение признака равно term (битмап только для чтения)
+     */
+    public IdBitmap equalTo(Attribute attribute, String term) {
+        IdBitmap bitmap = bitmaps.get(attribute).get(term);
+        return bitmap != null ? bitmap : new IdBitmap();
+    }
+
+    /**
+     * Минералы, у которых свёрнутое значение признака содержит term
+     */
+    public IdBitmap containing(Attribute attribute, String term) {
+        IdBitmap result = new IdBitmap();
+        for (Map.Entry<String, IdBitmap> entry : bitmaps.get(attribute).entrySet()) {
+            if (entry.getKey().contains(term)) {
+                result = result.or(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Число различных свёрнутых значений признака
+     */
+    public int distinctCount(Attribute attribute) {
+        return bitmaps.get(attribute).size();
+    }
+
+    private IdBitmap own(Attribute attribute, String value) {
+        Map<String, IdBitmap> attributeBitmaps = bitmaps.get(attribute);
+        IdBitmap bitmap = attributeBitmaps.get(value);
+        if (bitmap == null) {
+            bitmap = new IdBitmap();
+            attributeBitmaps.put(value, bitmap);
+            owned.get(attribute).add(value);
+        } else if (owned.get(attribute).add(value)) {
+            bitmap = bitmap.copy();
+            attributeBitmaps.put(value, bitmap);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,436 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Инвертированный индекс с частотами терминов для ранжирования по BM25.
+ * Для каждого термина хранится список ID минералов (по возрастанию) и сколько раз
+ * термин встречается в тексте каждого из них; для каждого минерала - длина текста
+ * в терминах. Этого хватает, чтобы посчитать BM25, не перечитывая тексты.
+ *
+ * Запрос проходит только списки своих терминов, а лучшие limit результатов отбираются
+ * кучей размера limit, без сортировки всех найденных.
+ *
+ * Как и в {@link NGramIndex}, {@link #copy()} разделяет списки с исходным индексом,
+ * а изменяемый список копируется при первой записи в него. Словарь терминов и длины
+ * текстов тоже постраничные ({@link PagedHashMap}, {@link PagedIntIntMap}): запись минерала
+ * копирует по небольшой странице словаря на каждый свой термин и блок длинного списка.
+ */
+public class Bm25Index {
+    // Стандартные параметры: насыщение частоты и вес нормировки по длине
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+
+    // Список ID по возрастанию с частотами, разбитый на блоки до BLOCK_SIZE записей.
+    // Копия разделяет блоки с исходным списком; блок копируется при первой записи в него,
+    // поэтому изменение длинного списка частого термина стоит O(size / BLOCK_SIZE + BLOCK_SIZE)
+    private static final class Posting {
+        static final int BLOCK_SIZE = 512;
+
+        int[][] ids;
+        int[][] frequencies;
+        int[] sizes;
+        // Блоки, скопированные этим списком; остальные общие с другими версиями
+        boolean[] owned;
+        int blockCount;
+        int size;
+
+        Posting() {
+            ids = new int[1][];
+            frequencies = new int[1][];
+            sizes = new int[1];
+            owned = new boolean[1];
+        }
+
+        private Posting(Posting other) {
+            int capacity = Math.max(1, other.blockCount);
+            ids = Arrays.copyOf(other.ids, capacity);
+            frequencies = Arrays.copyOf(other.frequencies, capacity);
+            sizes = Arrays.copyOf(other.sizes, capacity);
+            owned = new boolean[capacity];
+            blockCount = other.blockCount;
+            size = other.size;
+        }
+
+        Posting copy() {
+            return new Posting(this);
+        }
+
+        void add(int id, int frequency) {
+            if (blockCount == 0) {
+                insertBlock(0, 4);
+            }
+            int block = blockOf(id);
+            int blockSize = sizes[block];
+            int[] blockIds = ids[block];
+            // ID растут в порядке добавления, так что обычно это дописывание в конец
+            int position = blockSize > 0 && blockIds[blockSize - 1] < id
+                    ? -(blockSize + 1) : Arrays.binarySearch(blockIds, 0, blockSize, id);
+            if (position >= 0) {
+                own(block);
+                frequencies[block][position] = frequency;
+                return;
+            }
+            int insertAt = -position - 1;
+            if (blockSize == BLOCK_SIZE) {
+                if (insertAt == blockSize && block == blockCount - 1) {
+                    // Дописывание за полным последним блоком - новый блок
+                    insertBlock(blockCount, 4);
+                    block = blockCount - 1;
+                    insertAt = 0;
+                } else {
+                    splitBlock(block);
+                    if (insertAt > sizes[block]) {
+                        insertAt -= sizes[block];
+                        block++;
+                    }
+                }
+            }
+            own(block);
+            blockSize = sizes[block];
+            if (blockSize == ids[block].length) {
+                int capacity = Math.min(BLOCK_SIZE, blockSize * 2);
+                ids[block] = Arrays.copyOf(ids[block], capacity);
+                frequencies[block] = Arrays.copyOf(frequencies[block], capacity);
+            }
+            System.arraycopy(ids[block], insertAt, ids[block], insertAt + 1, blockSize - insertAt);
+            System.arraycopy(frequencies[block], insertAt, frequencies[block], insertAt + 1, blockSize - insertAt);
+            ids[block][insertAt] = id;
+            frequencies[block][insertAt] = frequency;
+            sizes[block]++;
+            size++;
+        }
+
+        void remove(int id) {
+            if (blockCount == 0) {
+                return;
+            }
+            int block = blockOf(id);
+            int blockSize = sizes[block];
+            int position = Arrays.binarySearch(ids[block], 0, blockSize, id);
+            if (position < 0) {
+                return;
+            }
+            size--;
+            if (blockSize == 1) {
+                removeBlock(block);
+                return;
+            }
+            own(block);
+            System.arraycopy(ids[block], position + 1, ids[block], position, blockSize - position - 1);
+            System.arraycopy(frequencies[block], position + 1, frequencies[block], position, blockSize - position - 1);
+            sizes[block]--;
+        }
+
+        // Последний блок, первый ID которого не больше id (или первый блок)
+        private int blockOf(int id) {
+            int low = 0;
+            int high = blockCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (ids[middle][0] <= id) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+
+        private void own(int block) {
+            if (!owned[block]) {
+                ids[block] = ids[block].clone();
+                frequencies[block] = frequencies[block].clone();
+                owned[block] = true;
+            }
+        }
+
+        private void insertBlock(int block, int capacity) {
+            if (blockCount == ids.length) {
+                int grown = blockCount * 2;
+                ids = Arrays.copyOf(ids, grown);
+                frequencies = Arrays.copyOf(frequencies, grown);
+                sizes = Arrays.copyOf(sizes, grown);
+                owned = Arrays.copyOf(owned, grown);
+            }
+            int tail = blockCount - block;
+            System.arraycopy(ids, block, ids, block + 1, tail);
+            System.arraycopy(frequencies, block, frequencies, block + 1, tail);
+            System.arraycopy(sizes, block, sizes, block + 1, tail);
+            System.arraycopy(owned, block, owned, block + 1, tail);
+            ids[block] = new int[capacity];
+            frequencies[block] = new int[capacity];
+            sizes[block] = 0;
+            owned[block] = true;
+            blockCount++;
+        }
+
+        private void removeBlock(int block) {
+            int tail = blockCount - block - 1;
+            System.arraycopy(ids, block + 1, ids, block, tail);
+            System.arraycopy(frequencies, block + 1, frequencies, block, tail);
+            System.arraycopy(sizes, block + 1, sizes, block, tail);
+            System.arraycopy(owned, block + 1, owned, block, tail);
+            blockCount--;
+            ids[blockCount] = null;
+            frequencies[blockCount] = null;
+        }
+
+        // Делит полный блок пополам: вторая половина уходит в новый блок следом
+        private void splitBlock(int block) {
+            int half = sizes[block] / 2;
+            int moved = sizes[block] - half;
+            insertBlock(block + 1, BLOCK_SIZE);
+            System.arraycopy(ids[block], half, ids[block + 1], 0, moved);
+            System.arraycopy(frequencies[block], half, frequencies[block + 1], 0, moved);
+            sizes[block + 1] = moved;
+            own(block);
+            sizes[block] = half;
+        }
+    }
+
+    /**
+     * Лучшие результаты запроса: ID по убыванию оценки, при равенстве - по возрастанию ID
+     */
+    public static final class TopHits {
+        private final int[] ids;
+        private final double[] scores;
+
+        private TopHits(int[] ids, double[] scores) {
+            this.ids = ids;
+            this.scores = scores;
+        }
+
+        public int[] getIds() {
+            return ids;
+        }
+
+        public double[] getScores() {
+            return scores;
+        }
+    }
+
+    private final PagedHashMap<String, Posting> postings;
+    // Списки, скопированные этой версией индекса; остальные общие с предыдущей
+    private final Set<String> owned;
+    // ID минерала → длина его текста в терминах
+    private PagedIntIntMap lengths;
+    private boolean lengthsOwned;
+    private long totalLength;
+
+    public Bm25Index() {
+        postings = new PagedHashMap<>();
+        owned = new HashSet<>();
+        lengths = new PagedIntIntMap();
+        lengthsOwned = true;
+    }
+
+    private Bm25Index(Bm25Index other) {
+        postings = other.postings.copy();
+        owned = new HashSet<>();
+        lengths = other.lengths;
+        totalLength = other.totalLength;
+    }
+
+    /**
+     * Копия для следующей версии снимка
+     */
+    public Bm25Index copy() {
+        return new Bm25Index(this);
+    }
+
+    /**
+     * Проиндексировать минерал; terms - термины его текста с повторами
+     */
+    public void add(int id, List<String> terms) {
+        if (terms.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> frequencies = countTerms(terms);
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            own(entry.getKey()).add(id, entry.getValue());
+        }
+        ownLengths();
+        totalLength += terms.size() - lengths.get(id, 0);
+        lengths.put(id, terms.size());
+    }
+
+    /**
+     * Убрать минерал; terms - те же термины, что были переданы в {@link #add}
+     */
+    public void remove(int id, List<String> terms) {
+        if (!lengths.containsKey(id)) {
+            return;
+        }
+        for (String term : countTerms(terms).keySet()) {
+            if (!postings.containsKey(term)) {
+                continue;
+            }
+            Posting posting = own(term);
+            posting.remove(id);
+            if (posting.size == 0) {
+                postings.remove(term);
+                owned.remove(term);
+            }
+        }
+        ownLengths();
+        totalLength -= lengths.get(id, 0);
+        lengths.remove(id);
+    }
+
+    /**
+     * Число проиндексированных минералов
+     */
+    public int documentCount() {
+        return lengths.size();
+    }
+
+    /**
+     * Лучшие limit минералов по сумме BM25 терминов запроса.
+     * Минерал попадает в результат, если в нём есть хотя бы один термин
+     */
+    public TopHits search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.terms(query));
+        int documents = lengths.size();
+        if (terms.isEmpty() || documents == 0 || limit <= 0) {
+            return new TopHits(new int[0], new double[0]);
+        }
+        double averageLength = (double) totalLength / documents;
+
+        // Накопитель оценок: ID → номер ячейки в scores
+        IntIntHashMap slots = new IntIntHashMap();
+        int[] slotIds = new int[16];
+        double[] scores = new double[16];
+        int count = 0;
+        for (String term : terms) {
+            Posting posting = postings.get(term);
+            if (posting == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (documents - posting.size + 0.5) / (posting.size + 0.5));
+            for (int block = 0; block < posting.blockCount; block++) {
+                int[] blockIds = posting.ids[block];
+                int[] blockFrequencies = posting.frequencies[block];
+                for (int i = 0; i < posting.sizes[block]; i++) {
+                    int id = blockIds[i];
+                    double frequency = blockFrequencies[i];
+                    double norm = K1 * (1 - B + B * lengths.get(id, 0) / averageLength);
+                    double score = idf * frequency * (K1 + 1) / (frequency + norm);
+                    int slot = slots.get(id, -1);
+                    if (slot < 0) {
+                        if (count == scores.length) {
+                            slotIds = Arrays.copyOf(slotIds, count * 2);
+                            scores = Arrays.copyOf(scores, count * 2);
+                        }
+                        slot = count++;
+                        slots.put(id, slot);
+                        slotIds[slot] = id;
+                    }
+                    scores[slot] += score;
+                }
+            }
+        }
+        return topHits(slotIds, scores, count, limit);
+    }
+
+    // Отбор лучших через кучу размера limit, в вершине - худший из отобранных
+    private static TopHits topHits(int[] ids, double[] scores, int count, int limit) {
+        int size = Math.min(limit, count);
+        int[] heap = new int[size];
+        int heapSize = 0;
+        for (int slot = 0; slot < count; slot++) {
+            if (heapSize < size) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++, ids, scores);
+            } else if (better(slot, heap[0], ids, scores)) {
+                heap[0] = slot;
+                siftDown(heap, heapSize, ids, scores);
+            }
+        }
+        // Разбираем кучу с конца: худший уходит в конец результата
+        int[] resultIds = new int[heapSize];
+        double[] resultScores = new double[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            int slot = heap[0];
+            resultIds[i] = ids[slot];
+            resultScores[i] = scores[slot];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, ids, scores);
+        }
+        return new TopHits(resultIds, resultScores);
+    }
+
+    private static boolean better(int slot, int other, int[] ids, double[] scores) {
+        int byScore = Double.compare(scores[slot], scores[other]);
+        return byScore != 0 ? byScore > 0 : ids[slot] < ids[other];
+    }
+
+    private static void siftUp(int[] heap, int index, int[] ids, double[] scores) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], heap[index], ids, scores)) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int size, int[] ids, double[] scores) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && better(heap[worst], heap[left], ids, scores)) {
+                worst = left;
+            }
+            if (right < size && better(heap[worst], heap[right], ids, scores)) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private static Map<String, Integer> countTerms(List<String> terms) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    private Posting own(String term) {
+        Posting posting = postings.get(term);
+        if (posting == null) {
+            posting = new Posting();
+            postings.put(term, posting);
+            owned.add(term);
+        } else if (owned.add(term)) {
+            posting = posting.copy();
+            postings.put(term, posting);
+        }
+        return posting;
+    }
+
+    private void ownLengths() {
+        if (!lengthsOwned) {
+            lengths = lengths.copy();
+            lengthsOwned = true;
+        }
+    }
+}
@@ -0,0 +1,574 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Генератор синтетического каталога для проверки на больших объёмах (10 тыс. - 10 млн записей).
+ * Записи похожи на настоящие: русские названия на "-ит", формулы с подстрочными индексами
+ * по типу класса (силикаты, карбонаты, сульфиды...), твердость и плотность строками
+ * в формате каталога ("6,5-7", "2,6-2,65"), месторождения, цвета и описания на русском.
+ * Классы, месторождения, применение и категории ценности распределены по Ципфу:
+ * несколько частых значений и длинный хвост редких, как в реальных коллекциях.
+ *
+ * Результат определяется только seed и количеством: каждый проход {@link #iterator()}
+ * выдаёт ту же последовательность, записи не хранятся в памяти целиком.
+ *
+ * Запуск: java CatalogGenerator 100000 --seed 42 --csv synthetic.csv --db
+ *
+ * С --check ничего не сохраняется: генератор проверяет, что тот же seed даёт те же записи
+ * и что экспорт в CSV и импорт через {@link FileService#importFromCSV} возвращают те же
+ * значения полей. При расхождении процесс завершается с кодом 1.
+ */
+public class CatalogGenerator implements Iterable<Mineral> {
+    static final String DEFAULT_CSV = "synthetic_minerals.csv";
+    static final long DEFAULT_SEED = 42;
+    // Показатель распределения Ципфа: чем больше, тем сильнее перекос к первым значениям
+    static final double ZIPF_EXPONENT = 1.1;
+    // Всего месторождений: реальные из списка и сгенерированные для длинного хвоста
+    static final int LOCALITY_COUNT = 5000;
+
+    // Профиль класса: диапазоны свойств и из чего собирается формула
+    private static final class MineralClass {
+        final String name;
+        final double minHardness;
+        final double maxHardness;
+        final double minGravity;
+        final double maxGravity;
+        final double metallic;
+        final String[] cations;
+        final String[] anions;
+
+        MineralClass(String name, double minHardness, double maxHardness, double minGravity, double maxGravity,
+                     double metallic, String[] cations, String[] anions) {
+            this.name = name;
+            this.minHardness = minHardness;
+            this.maxHardness = maxHardness;
+            this.minGravity = minGravity;
+            this.maxGravity = maxGravity;
+            this.metallic = metallic;
+            this.cations = cations;
+            this.anions = anions;
+        }
+    }
+
+    // В порядке убывания частоты; в анионах # - место для подстрочного индекса
+    private static final MineralClass[] CLASSES = {
+            new MineralClass("Силикаты", 4.5, 8, 2.2, 4.3, 0,
+                    new String[] {"Mg", "Fe", "Ca", "Al", "Na", "K", "Be", "Mn", "Zn", "Li", "Ti"},
+                    new String[] {"[SiO₄]#", "[Si₂O₆]", "[Si₄O₁₀](OH)₂", "[Si₆O₁₈]", "[Si₈O₂₂](OH)₂", "Si#O#"}),
+            new MineralClass("Оксиды", 5, 9, 3.5, 7.0, 0.2,
+                    new String[] {"Fe", "Al", "Ti", "Cr", "Mn", "Sn", "Zn", "Mg", "U", "Nb"},
+                    new String[] {"O#", "O#", "(OH)#"}),
+            new MineralClass("Сульфиды", 1.5, 6.5, 4.0, 7.6, 0.7,
+                    new String[] {"Fe", "Cu", "Pb", "Zn", "Sb", "Mo", "Hg", "Ni", "Co", "As", "Bi", "Ag"},
+                    new String[] {"S#", "S#", "AsS", "SbS#"}),
+            new MineralClass("Карбонаты", 3, 4.5, 2.6, 4.0, 0,
+                    new String[] {"Ca", "Mg", "Fe", "Mn", "Zn", "Cu", "Pb", "Sr", "Ba"},
+                    new String[] {"CO₃", "(CO₃)#", "(CO₃)#(OH)#"}),
+            new MineralClass("Сульфаты", 1.5, 3.5, 2.2, 4.5, 0,
+                    new String[] {"Ca", "Ba", "Sr", "Pb", "Mg", "Na", "Cu", "Fe"},
+                    new String[] {"SO₄", "SO₄·#H₂O", "(SO₄)#(OH)#"}),
+            new MineralClass("Фосфаты", 3.5, 5.5, 2.5, 4.0, 0,
+                    new String[] {"Ca", "Fe", "Al", "Cu", "Mn", "Pb"},
+                    new String[] {"(PO₄)#", "(PO₄)₃(F,OH)", "(PO₄)#·#H₂O"}),
+            new MineralClass("Галогениды", 2, 4, 2.0, 3.2, 0,
+                    new String[] {"Na", "K", "Ca", "Ag", "Cu"},
+                    new String[] {"Cl", "F#", "Cl#"}),
+            new MineralClass("Самородные элементы", 1.5, 10, 2.0, 19.3, 0.6,
+                    new String[] {"Au", "Ag", "Cu", "Pt", "Bi", "S", "C", "Fe"},
+                    new String[] {""}),
+            new MineralClass("Гидроксиды", 2.5, 5.5, 2.3, 4.3, 0,
+                    new String[] {"Al", "Fe", "Mg", "Mn"},
+                    new String[] {"(OH)#", "O(OH)"}),
+            new MineralClass("Хлориты", 2, 2.5, 2.6, 3.3, 0,
+                    new String[] {"Mg", "Fe", "Ni", "Mn"},
+                    new String[] {"Al[AlSi₃O₁₀](OH)₈", "[Si₄O₁₀](OH)₈"}),
+            new MineralClass("Бораты", 2, 7.5, 1.7, 3.5, 0,
+                    new String[] {"Na", "Ca", "Mg"},
+                    new String[] {"B#O#", "B#O#·#H₂O"}),
+            new MineralClass("Вольфраматы", 4, 5.5, 6.0, 7.5, 0.3,
+                    new String[] {"Ca", "Fe", "Mn", "Pb"},
+                    new String[] {"WO₄"}),
+            new MineralClass("Молибдаты", 2.5, 4, 4.0, 7.0, 0,
+                    new String[] {"Pb", "Ca", "Fe"},
+                    new String[] {"MoO₄"}),
+            new MineralClass("Арсенаты", 1.5, 4.5, 3.0, 5.5, 0,
+                    new String[] {"Co", "Ni", "Cu", "Fe", "Zn"},
+                    new String[] {"(AsO₄)#·#H₂O", "(AsO₄)#"}),
+            new MineralClass("Ванадаты", 2.5, 3.5, 6.0, 7.2, 0,
+                    new String[] {"Pb", "Cu", "Zn"},
+                    new String[] {"(VO₄)₃Cl", "(VO₄)#"}),
+            new MineralClass("Хроматы", 2.5, 3, 5.9, 6.1, 0,
+                    new String[] {"Pb"},
+                    new String[] {"CrO₄"}),
+            new MineralClass("Органические вещества", 1, 2.5, 1.0, 1.6, 0,
+                    new String[] {"C"},
+                    new String[] {"#H#O#"})
+    };
+
+    private static final String[] SYLLABLES = {
+            "ба", "ве", "ги", "до", "ка", "ле", "ми", "но", "па", "ро", "са", "те", "фа", "хо", "це",
+            "ши", "ар", "ол", "ун", "ис", "бер", "мал", "тор", "гра", "кла", "про", "сфе", "ста", "хри",
+            "вол", "кор", "лаз", "мар", "пир", "руд", "сид", "топ", "фос", "цир", "эпи"
+    };
+    private static final String[] NAME_ENDINGS = {"ит", "ит", "ит", "ат", "ин", "он", "ид"};
+
+    private static final String[] REAL_LOCALITIES = {
+            "Урал", "Кольский п-ов", "Забайкалье", "Приморье", "Дальнегорск, Приморье", "Алтай", "Якутия",
+            "Хибины", "Ильменские горы", "Таймыр", "Саяны", "Карелия", "Чукотка", "Камчатка", "Крым",
+            "Кавказ", "Казахстан", "Киргизия", "Слюдянка", "Мурзинка", "Адуй", "Березовск", "Норильск",
+            "Садон", "Хайдаркан", "Бразилия", "Мадагаскар", "Намибия", "Мексика", "Перу", "Боливия",
+            "Чили", "Марокко", "Китай", "Шри-Ланка", "Мьянма", "Австралия", "Канада", "Норвегия", "Чехия"
+    };
+    private static final String[] LOCALITY_KINDS = {"рудник", "месторождение", "карьер", "копь", "прииск"};
+
+    private static final String[] COLORS = {
+            "белый", "бесцветный", "серый", "чёрный", "жёлтый", "оранжевый", "красный", "розовый",
+            "фиолетовый", "синий", "голубой", "зелёный", "бурый", "коричневый", "золотистый",
+            "медно-красный", "свинцово-серый", "оливковый", "малиновый", "вишнёвый"
+    };
+    private static final String[] COLOR_SHADES = {"", "", "", "светло-", "тёмно-", "бледно-"};
+    private static final String[] STREAKS = {
+            "белая", "бесцветная", "серая", "чёрная", "бурая", "красная", "жёлтая", "зеленоватая", "нет"
+    };
+    private static final String[] NONMETALLIC_LUSTERS = {
+            "стеклянный", "стеклянный", "перламутровый", "шелковистый", "жирный", "алмазный",
+            "матовый", "смолистый", "восковой"
+    };
+    private static final String[] METALLIC_LUSTERS = {"металлический", "металловидный", "полуметаллический"};
+    private static final String[] CLEAVAGES = {
+            "совершенная", "весьма совершенная", "несовершенная", "средняя", "отсутствует"
+    };
+    private static final String[] FRACTURES = {
+            "раковистый", "неровный", "занозистый", "ступенчатый", "землистый", "крючковатый"
+    };
+    private static final String[] GENESES = {
+            "гидротермальное", "магматическое", "метаморфическое", "осадочное", "пегматитовое",
+            "метасоматическое", "зона окисления"
+    };
+    private static final String[] APPLICATIONS = {
+            "Коллекционный материал", "Поделочный камень", "Ювелирное дело", "Руда металла",
+            "Химическая промышленность", "Строительные материалы", "Абразивы", "Оптика и электроника",
+            "Огнеупоры и керамика", "Удобрения", "Пигменты и краски", "Металлургия", "Стекольная промышленность"
+    };
+    private static final String[] PROPERTIES = {
+            "Растворяется в соляной кислоте", "Хрупкий", "Обладает люминесценцией в ультрафиолете",
+            "Магнитный", "Слабо радиоактивен", "Образует призматические кристаллы",
+            "Встречается в виде зернистых агрегатов", "Образует друзы и щётки кристаллов",
+            "Плавится в пламени свечи", "Обладает двупреломлением", "Пьезоэлектрик",
+            "Теряет воду при нагревании", "Образует натёчные формы"
+    };
+    private static final String[] FACTS = {
+            "Назван по месту первой находки", "Назван в честь известного минералога",
+            "Известен с античных времён", "Используется как эталон в шкале Мооса",
+            "Крупнейший кристалл хранится в Минералогическом музее им. А.Е. Ферсмана",
+            "Часто встречается вместе с кварцем", "Долгое время считался разновидностью другого минерала",
+            "Ценится коллекционерами за редкую форму кристаллов", "Описан в середине XIX века"
+    };
+    private static final String[] VALUE_CATEGORIES = {
+            "коллекционный", "поделочный", "руда", "полудрагоценный", "драгоценный"
+    };
+
+    private final long seed;
+    private final int count;
+    private final String[] localities;
+    private final ZipfDistribution classDistribution;
+    private final ZipfDistribution localityDistribution;
+    private final ZipfDistribution applicationDistribution;
+    private final ZipfDistribution categoryDistribution;
+
+    public CatalogGenerator(long seed, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Количество записей не может быть отрицательным: " + count);
+        }
+        this.seed = seed;
+        this.count = count;
+        this.localities = generateLocalities(new Random(seed ^ 0x5DEECE66DL));
+        this.classDistribution = new ZipfDistribution(CLASSES.length, ZIPF_EXPONENT);
+        this.localityDistribution = new ZipfDistribution(localities.length, ZIPF_EXPONENT);
+        this.applicationDistribution = new ZipfDistribution(APPLICATIONS.length, ZIPF_EXPONENT);
+        this.categoryDistribution = new ZipfDistribution(VALUE_CATEGORIES.length, ZIPF_EXPONENT);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Записи по одной; каждый новый итератор начинает ту же последовательность заново
+     */
+    @Override
+    public Iterator<Mineral> iterator() {
+        Random random = new Random(seed);
+        return new Iterator<Mineral>() {
+            private int generated;
+
+            @Override
+            public boolean hasNext() {
+                return generated < count;
+            }
+
+            @Override
+            public Mineral next() {
+                if (generated >= count) {
+                    throw new NoSuchElementException();
+                }
+                generated++;
+                return generate(random);
+            }
+        };
+    }
+
+    /**
+     * Все записи списком - для небольших объёмов
+     */
+    public List<Mineral> toList() {
+        List<Mineral> minerals = new ArrayList<>(count);
+        for (Mineral mineral : this) {
+            minerals.add(mineral);
+        }
+        return minerals;
+    }
+
+    private Mineral generate(Random random) {
+        MineralClass mineralClass = CLASSES[classDistribution.sample(random)];
+        boolean metallic = random.nextDouble() < mineralClass.metallic;
+        return new Mineral(
+                name(random),
+                formula(mineralClass, random),
+                mineralClass.name,
+                colors(random),
+                pick(STREAKS, random),
+                metallic ? pick(METALLIC_LUSTERS, random) : pick(NONMETALLIC_LUSTERS, random),
+                range(mineralClass.minHardness, mineralClass.maxHardness, 0.5, 0.5, random),
+                range(mineralClass.minGravity, mineralClass.maxGravity, 0.01, 0.4, random),
+                pick(CLEAVAGES, random),
+                pick(FRACTURES, random),
+                joined(GENESES, 1 + random.nextInt(2), ", ", random),
+                APPLICATIONS[applicationDistribution.sample(random)],
+                joined(PROPERTIES, random.nextInt(3), ". ", random),
+                random.nextInt(3) == 0 ? "" : pick(FACTS, random),
+                locations(random),
+                VALUE_CATEGORIES[categoryDistribution.sample(random)],
+                "");
+    }
+
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            name.append(pick(SYLLABLES, random));
+        }
+        name.append(pick(NAME_ENDINGS, random));
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    // Катионы (иногда изоморфная пара в скобках) и анионная группа класса
+    private static String formula(MineralClass mineralClass, Random random) {
+        String cation = pick(mineralClass.cations, random);
+        if (mineralClass.anions[0].isEmpty()) {
+            // Самородный элемент - формула из одного символа
+            return cation;
+        }
+        StringBuilder formula = new StringBuilder();
+        if (mineralClass.cations.length > 1 && random.nextInt(4) == 0) {
+            String second = pick(mineralClass.cations, random);
+            if (!second.equals(cation)) {
+                cation = "(" + cation + "," + second + ")";
+            }
+        }
+        formula.append(cation).append(subscript(1 + random.nextInt(3)));
+        if (mineralClass.cations.length > 2 && random.nextInt(3) == 0) {
+            String other = pick(mineralClass.cations, random);
+            if (!cation.contains(other)) {
+                formula.append(other).append(subscript(1 + random.nextInt(2)));
+            }
+        }
+        String anion = pick(mineralClass.anions, random);
+        for (int i = 0; i < anion.length(); i++) {
+            char c = anion.charAt(i);
+            if (c == '#') {
+                formula.append(subscript(1 + random.nextInt(6)));
+            } else {
+                formula.append(c);
+            }
+        }
+        return formula.toString();
+    }
+
+    // Подстрочная запись числа; единица не пишется, как в формулах
+    static String subscript(int number) {
+        if (number == 1) {
+            return "";
+        }
+        String digits = Integer.toString(number);
+        StringBuilder result = new StringBuilder(digits.length());
+        for (int i = 0; i < digits.length(); i++) {
+            result.append((char) ('₀' + (digits.charAt(i) - '0')));
+        }
+        return result.toString();
+    }
+
+    private static String colors(Random random) {
+        int count = 1 + random.nextInt(3);
+        StringBuilder colors = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            String color = pick(COLOR_SHADES, random) + pick(COLORS, random);
+            if (colors.indexOf(color) >= 0) {
+                continue;
+            }
+            if (colors.length() > 0) {
+                colors.append(", ");
+            }
+            colors.append(color);
+        }
+        colors.setCharAt(0, Character.toUpperCase(colors.charAt(0)));
+        return colors.toString();
+    }
+
+    private String locations(Random random) {
+        int count = random.nextInt(5) == 0 ? 2 : 1;
+        String first = localities[localityDistribution.sample(random)];
+        if (count == 1) {
+            return first;
+        }
+        String second = localities[localityDistribution.sample(random)];
+        return second.equals(first) ? first : first + ", " + second;
+    }
+
+    /**
+     * Значение или диапазон в формате каталога: "6,5", "3,5-4", "2,61-2,65".
+     * step - шаг значений (0,5 для твердости, 0,01 для плотности), rangeChance - доля диапазонов
+     */
+    private static String range(double min, double max, double step, double rangeChance, Random random) {
+        double low = roundTo(min + random.nextDouble() * (max - min), step);
+        if (random.nextDouble() >= rangeChance) {
+            return decimal(low);
+        }
+        double width = step >= 0.5 ? step * (1 + random.nextInt(2)) : roundTo(0.02 + random.nextDouble() * 0.3, step);
+        double high = roundTo(Math.min(low + width, max), step);
+        return high > low ? decimal(low) + "-" + decimal(high) : decimal(low);
+    }
+
+    private static double roundTo(double value, double step) {
+        return Math.round(value / step) * step;
+    }
+
+    // Десятичная запятая, без лишних нулей: 7 → "7", 2.60 → "2,6"
+    private static String decimal(double value) {
+        long hundredths = Math.round(value * 100);
+        StringBuilder text = new StringBuilder().append(hundredths / 100);
+        int fraction = (int) (hundredths % 100);
+        if (fraction != 0) {
+            text.append(',').append(fraction / 10);
+            if (fraction % 10 != 0) {
+                text.append(fraction % 10);
+            }
+        }
+        return text.toString();
+    }
+
+    private static String joined(String[] values, int count, String separator, Random random) {
+        List<String> chosen = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String value = pick(values, random);
+            if (!chosen.contains(value)) {
+                chosen.add(value);
+            }
+        }
+        return String.join(separator, chosen);
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    // Реальные месторождения в начале (самые частые), дальше сгенерированные "рудник Борское"...
+    private static String[] generateLocalities(Random random) {
+        String[] result = Arrays.copyOf(REAL_LOCALITIES, LOCALITY_COUNT);
+        for (int i = REAL_LOCALITIES.length; i < LOCALITY_COUNT; i++) {
+            String root = pick(SYLLABLES, random) + pick(SYLLABLES, random);
+            root = Character.toUpperCase(root.charAt(0)) + root.substring(1);
+            result[i] = pick(LOCALITY_KINDS, random) + " " + root + "ское, " + REAL_LOCALITIES[random.nextInt(20)];
+        }
+        return result;
+    }
+
+    /**
+     * Распределение Ципфа на рангах 0..n-1: вероятность ранга k пропорциональна 1/(k+1)^s.
+     * Выбор - двоичный поиск по накопленным вероятностям
+     */
+    static final class ZipfDistribution {
+        private final double[] cumulative;
+
+        ZipfDistribution(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            int rank = index >= 0 ? index : -index - 1;
+            return Math.min(rank, cumulative.length - 1);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Использование: java CatalogGenerator <количество> [--seed N] [--csv файл] [--db] [--check]");
+            System.out.println("Без --csv и --db записи сохраняются в " + DEFAULT_CSV);
+            return;
+        }
+        int count;
+        long seed = DEFAULT_SEED;
+        String csvFile = null;
+        boolean toDatabase = false;
+        boolean check = false;
+        try {
+            count = Integer.parseInt(args[0]);
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--csv":
+                        csvFile = args[++i];
+                        break;
+                    case "--db":
+                        toDatabase = true;
+                        break;
+                    case "--check":
+                        check = true;
+                        break;
+                    default:
+                        System.out.println("❌ Неизвестный параметр: " + args[i]);
+                        return;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            System.out.println("❌ Неверные параметры: " + String.join(" ", args));
+            return;
+        }
+        if (count < 1) {
+            System.out.println("❌ Количество должно быть положительным");
+            return;
+        }
+        if (check) {
+            if (!check(seed, count)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (csvFile == null && !toDatabase) {
+            csvFile = DEFAULT_CSV;
+        }
+
+        CatalogGenerator generator = new CatalogGenerator(seed, count);
+        if (csvFile != null) {
+            long start = System.currentTimeMillis();
+            new FileService().exportToFile(generator, csvFile);
+            System.out.println("✅ " + count + " минералов (seed " + seed + ") записано в " + csvFile
+                    + " за " + (System.currentTimeMillis() - start) + " мс");
+        }
+        if (toDatabase) {
+            long start = System.currentTimeMillis();
+            DatabaseService.createTables();
+            int saved = DatabaseService.bulkInsertMinerals(generator, true);
+            System.out.println("✅ " + saved + " минералов (seed " + seed + ") записано в minerals.db за "
+                    + (System.currentTimeMillis() - start) + " мс");
+        }
+    }
+
+    // Поля записи в порядке столбцов CSV
+    private static final List<Function<Mineral, String>> FIELDS = Arrays.asList(
+            Mineral::getName, Mineral::getFormula, Mineral::getMineralClass, Mineral::getColor,
+            Mineral::getStreakColor, Mineral::getLuster, Mineral::getHardness, Mineral::getSpecificGravity,
+            Mineral::getCleavage, Mineral::getFracture, Mineral::getGenesis, Mineral::getApplication,
+            Mineral::getAdditionalProperties, Mineral::getInterestingFacts, Mineral::getLocation,
+            Mineral::getValueCategory, Mineral::getImageUrl);
+
+    /**
+     * Проверка детерминированности и обратимости экспорта: два прохода с одним seed дают
+     * одинаковые записи, а CSV после импорта - те же значения полей. Печатает первое
+     * расхождение и возвращает false
+     */
+    static boolean check(long seed, int count) {
+        CatalogGenerator generator = new CatalogGenerator(seed, count);
+        if (!sameRecords("повторный проход", generator, new CatalogGenerator(seed, count))) {
+            return false;
+        }
+        File file;
+        try {
+            file = File.createTempFile("catalog-check", ".csv");
+        } catch (IOException e) {
+            System.out.println("❌ Не удалось создать временный файл: " + e.getMessage());
+            return false;
+        }
+        try {
+            new FileService().exportToFile(generator, file.getPath());
+            List<Mineral> imported = new FileService().importFromCSV(file.getPath());
+            if (imported == null || imported.size() != count) {
+                System.out.println("❌ Импорт CSV: ожидалось " + count + " записей, прочитано "
+                        + (imported == null ? 0 : imported.size()));
+                return false;
+            }
+            if (!sameRecords("экспорт и импорт CSV", generator, imported)) {
+                return false;
+            }
+        } finally {
+            file.delete();
+        }
+        System.out.println("✅ " + count + " минералов (seed " + seed + "): повторный проход и экспорт/импорт CSV совпадают");
+        return true;
+    }
+
+    private static boolean sameRecords(String stage, Iterable<Mineral> expected, Iterable<Mineral> actual) {
+        Iterator<Mineral> actualIterator = actual.iterator();
+        int index = 0;
+        for (Mineral mineral : expected) {
+            if (!actualIterator.hasNext()) {
+                System.out.println("❌ " + stage + ": записей меньше, чем " + (index + 1));
+                return false;
+            }
+            Mineral other = actualIterator.next();
+            for (int field = 0; field < FIELDS.size(); field++) {
+                // CSV не различает пустое значение и его отсутствие
+                String value = orEmpty(FIELDS.get(field).apply(mineral));
+                String otherValue = orEmpty(FIELDS.get(field).apply(other));
+                if (!value.equals(otherValue)) {
+                    System.out.println("❌ " + stage + ": запись " + index + ", поле " + (field + 1)
+                            + ": \"" + value + "\" ≠ \"" + otherValue + "\"");
+                    return false;
+                }
+            }
+            index++;
+        }
+        if (actualIterator.hasNext()) {
+            System.out.println("❌ " + stage + ": лишние записи после " + index);
+            return false;
+        }
+        return true;
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,277 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Вторичные индексы одного снимка каталога.
+ * Опубликованный экземпляр не меняется; писатель получает свою копию через {@link #copy()}
+ * и обновляет её вызовами {@link #add} и {@link #remove}.
+ */
+public class CatalogIndexes {
+    // Подстрочные индексы: по названию и по всем полям, где ищет searchInAllFields
+    private final NGramIndex nameGrams;
+    private final NGramIndex textGrams;
+    // Термины тех же полей после разбора (основы слов, транслитерация, синонимы)
+    private final TokenIndex tokens;
+    // Те же термины с частотами для ранжирования
+    private final Bm25Index ranking;
+    // Названия для поиска с опечатками
+    private final FuzzyNameIndex fuzzyNames;
+    // Подсказки при наборе: названия, их синонимы и месторождения
+    private final SuggestIndex suggestions;
+    // Химические элементы формул
+    private final ElementIndex elements;
+    // Векторы признаков для поиска похожих минералов
+    private final VectorIndex vectors;
+    private final FacetIndex facets;
+    private final BitmapIndex bitmaps;
+    // Диапазоны твердости и плотности
+    private final IntervalTree hardness;
+    private final IntervalTree specificGravity;
+    // Минимум, максимум, среднее и дисперсия тех же значений
+    private final NumericStatistics hardnessStatistics;
+    private final NumericStatistics specificGravityStatistics;
+    // Эскизы квантилей тех же свойств по классам
+    private final QuantileIndex quantiles;
+    // Самые частые месторождения и цвета в ограниченной памяти
+    private final HeavyHitters topLocations;
+    private final HeavyHitters topColors;
+
+    public CatalogIndexes() {
+        this(new NGramIndex(), new NGramIndex(), new TokenIndex(), new Bm25Index(), new FuzzyNameIndex(),
+                new SuggestIndex(), new ElementIndex(), new VectorIndex(), new FacetIndex(), new BitmapIndex(), new IntervalTree(), new IntervalTree(),
+                new NumericStatistics(), new NumericStatistics(), new QuantileIndex(),
+                new HeavyHitters(), new HeavyHitters());
+    }
+
+    private CatalogIndexes(NGramIndex nameGrams, NGramIndex textGrams, TokenIndex tokens, Bm25Index ranking,
+                           FuzzyNameIndex fuzzyNames, SuggestIndex suggestions, ElementIndex elements,
+                           VectorIndex vectors, FacetIndex facets, BitmapIndex bitmaps, IntervalTree hardness,
+                           IntervalTree specificGravity, NumericStatistics hardnessStatistics,
+                           NumericStatistics specificGravityStatistics, QuantileIndex quantiles,
+                           HeavyHitters topLocations, HeavyHitters topColors) {
+        this.nameGrams = nameGrams;
+        this.textGrams = textGrams;
+        this.tokens = tokens;
+        this.ranking = ranking;
+        this.fuzzyNames = fuzzyNames;
+        this.suggestions = suggestions;
+        this.elements = elements;
+        this.vectors = vectors;
+        this.facets = facets;
+        this.bitmaps = bitmaps;
+        this.hardness = hardness;
+        this.specificGravity = specificGravity;
+        this.hardnessStatistics = hardnessStatistics;
+        this.specificGravityStatistics = specificGravityStatistics;
+        this.quantiles = quantiles;
+        this.topLocations = topLocations;
+        this.topColors = topColors;
+    }
+
+    public CatalogIndexes copy() {
+        return new CatalogIndexes(nameGrams.copy(), textGrams.copy(), tokens.copy(), ranking.copy(),
+                fuzzyNames.copy(), suggestions.copy(), elements.copy(), vectors.copy(), facets.copy(),
+                bitmaps.copy(), hardness.copy(), specificGravity.copy(),
+                hardnessStatistics.copy(), specificGravityStatistics.copy(), quantiles.copy(),
+                topLocations.copy(), topColors.copy());
+    }
+
+    public void add(Mineral mineral) {
+        nameGrams.add(mineral.getId(), mineral.getFoldedName());
+        String[] texts = searchableTexts(mineral);
+        textGrams.add(mineral.getId(), texts);
+        List<String> terms = analyzedTerms(texts);
+        tokens.add(mineral.getId(), terms);
+        ranking.add(mineral.getId(), terms);
+        fuzzyNames.add(mineral.getId(), mineral.getFoldedName());
+        suggestions.add(mineral);
+        elements.add(mineral.getId(), mineral.getFormula());
+        vectors.add(mineral);
+        facets.add(mineral);
+        bitmaps.add(mineral);
+        hardness.add(mineral.getId(), mineral.getHardnessMin(), mineral.getHardnessMax());
+        specificGravity.add(mineral.getId(), mineral.getSpecificGravityMin(), mineral.getSpecificGravityMax());
+        hardnessStatistics.add(mineral.getHardnessMin(), mineral.getHardnessMax());
+        specificGravityStatistics.add(mineral.getSpecificGravityMin(), mineral.getSpecificGravityMax());
+        quantiles.add(mineral);
+        topLocations.add(mineral.getLocation());
+        topColors.add(mineral.getColor());
+    }
+
+    /**
+     * Добавить минералы пакетом. Результат тот же, что у {@link #add} по одному, но одинаковые
+     * значения полей разбираются на термины один раз, массивы векторов расширяются заранее,
+     * подсказки и деревья интервалов строятся один раз в конце, а не вставкой каждого минерала
+     */
+    public void addAll(List<Mineral> minerals) {
+        int count = minerals.size();
+        vectors.reserve(count);
+        Map<String, List<String>> analyzed = new HashMap<>();
+        int[] ids = new int[count];
+        double[] hardnessLows = new double[count];
+        double[] hardnessHighs = new double[count];
+        double[] gravityLows = new double[count];
+        double[] gravityHighs = new double[count];
+        for (int i = 0; i < count; i++) {
+            Mineral mineral = minerals.get(i);
+            nameGrams.add(mineral.getId(), mineral.getFoldedName());
+            String[] texts = searchableTexts(mineral);
+            textGrams.add(mineral.getId(), texts);
+            List<String> terms = new ArrayList<>();
+            for (String text : texts) {
+                terms.addAll(analyzed.computeIfAbsent(text, TextAnalyzer::terms));
+            }
+            tokens.add(mineral.getId(), terms);
+            ranking.add(mineral.getId(), terms);
+            fuzzyNames.add(mineral.getId(), mineral.getFoldedName());
+            elements.add(mineral.getId(), mineral.getFormula());
+            vectors.add(mineral);
+            facets.add(mineral);
+            bitmaps.add(mineral);
+            ids[i] = mineral.getId();
+            hardnessLows[i] = mineral.getHardnessMin();
+            hardnessHighs[i] = mineral.getHardnessMax();
+            gravityLows[i] = mineral.getSpecificGravityMin();
+            gravityHighs[i] = mineral.getSpecificGravityMax();
+            hardnessStatistics.add(hardnessLows[i], hardnessHighs[i]);
+            specificGravityStatistics.add(gravityLows[i], gravityHighs[i]);
+            quantiles.add(mineral);
+            topLocations.add(mineral.getLocation());
+            topColors.add(mineral.getColor());
+        }
+        suggestions.addAll(minerals);
+        hardness.addAll(ids, hardnessLows, hardnessHighs, count);
+        specificGravity.addAll(ids, gravityLows, gravityHighs, count);
+    }
+
+    public void remove(Mineral mineral) {
+        nameGrams.remove(mineral.getId(), mineral.getFoldedName());
+        String[] texts = searchableTexts(mineral);
+        textGrams.remove(mineral.getId(), texts);
+        List<String> terms = analyzedTerms(texts);
+        tokens.remove(mineral.getId(), terms);
+        ranking.remove(mineral.getId(), terms);
+        fuzzyNames.remove(mineral.getId(), mineral.getFoldedName());
+        suggestions.remove(mineral);
+        elements.remove(mineral.getId(), mineral.getFormula());
+        vectors.remove(mineral);
+        facets.remove(mineral);
+        bitmaps.remove(mineral);
+        hardness.remove(mineral.getId(), mineral.getHardnessMin());
+        specificGravity.remove(mineral.getId(), mineral.getSpecificGravityMin());
+        hardnessStatistics.remove(mineral.getHardnessMin(), mineral.getHardnessMax());
+        specificGravityStatistics.remove(mineral.getSpecificGravityMin(), mineral.getSpecificGravityMax());
+        quantiles.remove(mineral);
+        topLocations.remove(mineral.getLocation());
+        topColors.remove(mineral.getColor());
+    }
+
+    public NGramIndex getNameGrams() {
+        return nameGrams;
+    }
+
+    public NGramIndex getTextGrams() {
+        return textGrams;
+    }
+
+    public TokenIndex getTokens() {
+        return tokens;
+    }
+
+    public Bm25Index getRanking() {
+        return ranking;
+    }
+
+    public FuzzyNameIndex getFuzzyNames() {
+        return fuzzyNames;
+    }
+
+    public SuggestIndex getSuggestions() {
+        return suggestions;
+    }
+
+    public ElementIndex getElements() {
+        return elements;
+    }
+
+    public VectorIndex getVectors() {
+        return vectors;
+    }
+
+    public FacetIndex getFacets() {
+        return facets;
+    }
+
+    public BitmapIndex getBitmaps() {
+        return bitmaps;
+    }
+
+    public IntervalTree getHardness() {
+        return hardness;
+    }
+
+    public IntervalTree getSpecificGravity() {
+        return specificGravity;
+    }
+
+    public NumericStatistics getHardnessStatistics() {
+        return hardnessStatistics;
+    }
+
+    public NumericStatistics getSpecificGravityStatistics() {
+        return specificGravityStatistics;
+    }
+
+    public QuantileIndex getQuantiles() {
+        return quantiles;
+    }
+
+    /**
+     * Эскиз самых частых значений фасета; ведётся только для месторождений и цветов, для остальных - null
+     */
+    public HeavyHitters getHeavyHitters(FacetIndex.Facet facet) {
+        switch (facet) {
+            case LOCATION:
+                return topLocations;
+            case COLOR:
+                return topColors;
+            default:
+                return null;
+        }
+    }
+
+    // Поля, по которым ищет searchInAllFields
+    static final MineralColumns.Column[] SEARCHABLE_COLUMNS = {
+            MineralColumns.Column.NAME,
+            MineralColumns.Column.FORMULA,
+            MineralColumns.Column.MINERAL_CLASS,
+            MineralColumns.Column.COLOR,
+            MineralColumns.Column.LOCATION,
+            MineralColumns.Column.APPLICATION,
+            MineralColumns.Column.INTERESTING_FACTS
+    };
+
+    // Те же поля в свёрнутой форме
+    static String[] searchableTexts(Mineral mineral) {
+        return new String[] {
+                mineral.getFoldedName(),
+                mineral.getFoldedFormula(),
+                mineral.getFoldedMineralClass(),
+                mineral.getFoldedColor(),
+                mineral.getFoldedLocation(),
+                mineral.getFoldedApplication(),
+                mineral.getFoldedInterestingFacts()
+        };
+    }
+
+    // Термины всех полей поиска подряд, с повторами
+    static List<String> analyzedTerms(String[] texts) {
+        List<String> terms = new ArrayList<>();
+        for (String text : texts) {
+            terms.addAll(TextAnalyzer.terms(text));
+        }
+        return terms;
+    }
+}
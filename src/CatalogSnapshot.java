@@ -0,0 +1,328 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Неизменяемый снимок коллекции минералов.
+ * Читатели получают снимок одной volatile-ссылкой и дальше работают без блокировок;
+ * писатели собирают следующую версию через {@link Builder} и публикуют её целиком.
+ *
+ * Сами записи лежат в {@link MineralColumns}; методы, возвращающие Mineral,
+ * каждый раз собирают новые объекты, а фильтры проверяют строки прямо по столбцам.
+ * На большом каталоге проходы {@link #select} и {@link #resolve} идут отрезками
+ * параллельно ({@link ParallelScan}), порядок результата от этого не меняется.
+ */
+public final class CatalogSnapshot {
+    // Строки в порядке добавления; удалённая строка остаётся с ID 0 до уплотнения
+    private final MineralColumns columns;
+    private final int size;
+    // Первичный индекс: ID минерала → номер строки (страницы общие с соседними версиями)
+    private final PagedIntIntMap rowById;
+    private final CatalogIndexes indexes;
+    private final long version;
+    // Общий для всех версий одного сервиса
+    private final ParallelScan scan;
+
+    private CatalogSnapshot(MineralColumns columns, int size, PagedIntIntMap rowById,
+                            CatalogIndexes indexes, long version, ParallelScan scan) {
+        this.columns = columns;
+        this.size = size;
+        this.rowById = rowById;
+        this.indexes = indexes;
+        this.version = version;
+        this.scan = scan;
+    }
+
+    /**
+     * Пустой снимок для нового сервиса. У каждого сервиса свой: версии дописывают в общие массивы
+     */
+    static CatalogSnapshot empty(ParallelScan scan) {
+        return new CatalogSnapshot(MineralColumns.empty(), 0, new PagedIntIntMap(), new CatalogIndexes(), 0, scan);
+    }
+
+    /**
+     * Номер версии: растёт на единицу при каждой публикации
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public Mineral get(int id) {
+        int row = rowById.get(id, -1);
+        return row >= 0 ? columns.materialize(row) : null;
+    }
+
+    public boolean contains(int id) {
+        return rowById.containsKey(id);
+    }
+
+    /**
+     * Номер строки минерала в {@link #columns()} или -1
+     */
+    public int rowOf(int id) {
+        return rowById.get(id, -1);
+    }
+
+    /**
+     * Живые минералы в порядке добавления
+     */
+    public Stream<Mineral> stream() {
+        return rows().mapToObj(columns::materialize);
+    }
+
+    /**
+     * Номера живых строк в порядке добавления
+     */
+    public IntStream rows() {
+        return IntStream.range(0, columns.rowCount()).filter(columns::isLive);
+    }
+
+    /**
+     * ID живых минералов в порядке добавления
+     */
+    public int[] ids() {
+        return rows().map(columns::id).toArray();
+    }
+
+    /**
+     * Столбцы этой версии
+     */
+    public MineralColumns columns() {
+        return columns;
+    }
+
+    /**
+     * Вторичные индексы этой версии
+     */
+    public CatalogIndexes indexes() {
+        return indexes;
+    }
+
+    /**
+     * Минералы с указанными ID (в переданном порядке), строки которых прошли проверку
+     */
+    public List<Mineral> resolve(int[] ids, IntPredicate rowCheck) {
+        return scan.collect(ids.length, (from, to, out) -> {
+            for (int i = from; i < to; i++) {
+                int row = rowById.get(ids[i], -1);
+                if (row >= 0 && rowCheck.test(row)) {
+                    out.add(columns.materialize(row));
+                }
+            }
+        });
+    }
+
+    /**
+     * Минералы с указанными ID (в переданном порядке) без дополнительной проверки
+     */
+    public List<Mineral> resolve(int[] ids) {
+        if (ids.length < scan.getThreshold()) {
+            List<Mineral> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                int row = rowById.get(id, -1);
+                if (row >= 0) {
+                    result.add(columns.materialize(row));
+                }
+            }
+            return result;
+        }
+        return resolve(ids, row -> true);
+    }
+
+    /**
+     * Полный проход: минералы, строки которых прошли проверку, в порядке добавления
+     */
+    public List<Mineral> select(IntPredicate rowCheck) {
+        return scan.collect(columns.rowCount(), (from, to, out) -> {
+            for (int row = from; row < to; row++) {
+                if (columns.isLive(row) && rowCheck.test(row)) {
+                    out.add(columns.materialize(row));
+                }
+            }
+        });
+    }
+
+    public List<Mineral> toList() {
+        return select(row -> true);
+    }
+
+    /**
+     * Начать сборку следующей версии. Вызывать только под блокировкой писателя
+     */
+    Builder edit() {
+        return new Builder(this);
+    }
+
+    /**
+     * Изменяемая заготовка следующей версии. Общие со снимком структуры
+     * копируются при первом изменении, которое могли бы увидеть читатели
+     */
+    static final class Builder {
+        private final CatalogSnapshot base;
+        private MineralColumns.Builder columns;
+        private int size;
+        private PagedIntIntMap rowById;
+        private CatalogIndexes indexes;
+        private boolean indexOwned;
+        private boolean indexesOwned;
+        private boolean modified;
+
+        private Builder(CatalogSnapshot base) {
+            this.base = base;
+            this.columns = base.columns.edit();
+            this.size = base.size;
+            this.rowById = base.rowById;
+            this.indexes = base.indexes;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(Mineral mineral) {
+            ownIndex();
+            ownIndexes();
+            rowById.put(mineral.getId(), columns.append(mineral));
+            size++;
+            indexes.add(mineral);
+            modified = true;
+        }
+
+        /**
+         * Добавить минералы пакетом: массивы строк и первичный индекс расширяются один раз,
+         * а вторичные индексы обновляются через {@link CatalogIndexes#addAll}
+         */
+        void addAll(List<Mineral> minerals) {
+            if (minerals.isEmpty()) {
+                return;
+            }
+            ownIndex();
+            ownIndexes();
+            columns.reserve(minerals.size());
+            rowById.ensureCapacity(size + minerals.size());
+            for (Mineral mineral : minerals) {
+                rowById.put(mineral.getId(), columns.append(mineral));
+            }
+            size += minerals.size();
+            indexes.addAll(minerals);
+            modified = true;
+        }
+
+        Mineral remove(int id) {
+            int row = rowById.get(id, -1);
+            if (row < 0) {
+                return null;
+            }
+            ownIndex();
+            ownIndexes();
+            // Индексам нужны значения полей, поэтому удаляемую запись собираем до пометки
+            Mineral removed = columns.build().materialize(row);
+            columns.delete(row);
+            rowById.remove(id);
+            size--;
+            indexes.remove(removed);
+            modified = true;
+            return removed;
+        }
+
+        /**
+         * Удалить все минералы, подходящие под условие. Возвращает удалённые
+         */
+        List<Mineral> removeIf(Predicate<Mineral> condition) {
+            MineralColumns current = columns.build();
+            List<Integer> matching = new ArrayList<>();
+            for (int row = 0; row < current.rowCount(); row++) {
+                if (current.isLive(row) && condition.test(current.materialize(row))) {
+                    matching.add(current.id(row));
+                }
+            }
+            List<Mineral> removed = new ArrayList<>(matching.size());
+            for (int id : matching) {
+                removed.add(remove(id));
+            }
+            return removed;
+        }
+
+        void clear() {
+            columns = MineralColumns.empty().edit();
+            size = 0;
+            rowById = new PagedIntIntMap();
+            indexes = new CatalogIndexes();
+            indexOwned = true;
+            indexesOwned = true;
+            modified = true;
+        }
+
+        boolean isModified() {
+            return modified;
+        }
+
+        CatalogSnapshot build() {
+            if (!modified) {
+                return base;
+            }
+            compactIfNeeded();
+            if (indexes.getQuantiles().hasStale()) {
+                // Классы с большой долей удалений собираются заново по своим строкам из битмапа класса
+                BitmapIndex bitmaps = indexes.getBitmaps();
+                indexes.getQuantiles().rebuildStale(columns.build(), mineralClass -> rowsOf(
+                        bitmaps.equalTo(BitmapIndex.Attribute.MINERAL_CLASS, mineralClass)));
+            }
+            return new CatalogSnapshot(columns.build(), size, rowById, indexes, base.version + 1, base.scan);
+        }
+
+        // Строки минералов из битмапа ID; ID без строки пропускаются
+        private int[] rowsOf(IdBitmap ids) {
+            int[] rows = ids.toArray();
+            int count = 0;
+            for (int id : rows) {
+                int row = rowById.get(id, -1);
+                if (row >= 0) {
+                    rows[count++] = row;
+                }
+            }
+            return Arrays.copyOf(rows, count);
+        }
+
+        private void ownIndex() {
+            if (!indexOwned) {
+                rowById = rowById.copy();
+                indexOwned = true;
+            }
+        }
+
+        private void ownIndexes() {
+            if (!indexesOwned) {
+                indexes = indexes.copy();
+                indexesOwned = true;
+            }
+        }
+
+        // Уплотняем строки, когда удалённых стало больше, чем живых
+        private void compactIfNeeded() {
+            int dead = columns.rowCount() - size;
+            if (dead <= size || dead < 16) {
+                return;
+            }
+            columns.compact();
+            MineralColumns compacted = columns.build();
+            rowById = new PagedIntIntMap(size);
+            indexOwned = true;
+            for (int row = 0; row < compacted.rowCount(); row++) {
+                rowById.put(compacted.id(row), row);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Статистика одной версии каталога: число минералов, сводки по твердости и плотности
+ * ({@link NumericStatistics}), счётчики по классам и месторождениям ({@link FacetIndex})
+ * и самые частые месторождения и цвета ({@link HeavyHitters}).
+ * Всё это ведётся индексами снимка при каждом изменении, поэтому сборка статистики
+ * не проходит по минералам, а только копирует готовые значения.
+ */
+public final class CatalogStatistics {
+    private final long version;
+    private final int total;
+    private final NumericStatistics.Summary hardness;
+    private final NumericStatistics.Summary specificGravity;
+    private final Map<String, Integer> classCounts;
+    private final Map<String, Integer> locationCounts;
+    private final HeavyHitters topLocations;
+    private final HeavyHitters topColors;
+
+    private CatalogStatistics(long version, int total, NumericStatistics.Summary hardness,
+                              NumericStatistics.Summary specificGravity,
+                              Map<String, Integer> classCounts, Map<String, Integer> locationCounts,
+                              HeavyHitters topLocations, HeavyHitters topColors) {
+        this.version = version;
+        this.total = total;
+        this.hardness = hardness;
+        this.specificGravity = specificGravity;
+        this.classCounts = classCounts;
+        this.locationCounts = locationCounts;
+        this.topLocations = topLocations;
+        this.topColors = topColors;
+    }
+
+    static CatalogStatistics of(CatalogSnapshot snapshot) {
+        CatalogIndexes indexes = snapshot.indexes();
+        FacetIndex facets = indexes.getFacets();
+        return new CatalogStatistics(
+                snapshot.getVersion(),
+                snapshot.size(),
+                indexes.getHardnessStatistics().summary(),
+                indexes.getSpecificGravityStatistics().summary(),
+                byCount(facets.histogram(FacetIndex.Facet.MINERAL_CLASS)),
+                byCount(facets.histogram(FacetIndex.Facet.LOCATION)),
+                indexes.getHeavyHitters(FacetIndex.Facet.LOCATION),
+                indexes.getHeavyHitters(FacetIndex.Facet.COLOR));
+    }
+
+    // Непустые значения по убыванию числа минералов, при равенстве - по алфавиту
+    private static Map<String, Integer> byCount(Map<String, Integer> histogram) {
+        List<Map.Entry<String, Integer>> entries = histogram.entrySet().stream()
+                .filter(entry -> !entry.getKey().trim().isEmpty())
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .collect(Collectors.toList());
+        Map<String, Integer> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    /**
+     * Версия снимка, по которой собрана статистика
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public NumericStatistics.Summary getHardness() {
+        return hardness;
+    }
+
+    public NumericStatistics.Summary getSpecificGravity() {
+        return specificGravity;
+    }
+
+    /**
+     * Класс → число минералов, по убыванию
+     */
+    public Map<String, Integer> getClassCounts() {
+        return classCounts;
+    }
+
+    /**
+     * Месторождение (как записано у минерала) → число минералов, по убыванию
+     */
+    public Map<String, Integer> getLocationCounts() {
+        return locationCounts;
+    }
+
+    /**
+     * Самые частые месторождения (эскиз опубликованного снимка, только для чтения)
+     */
+    public HeavyHitters getTopLocations() {
+        return topLocations;
+    }
+
+    /**
+     * Самые частые цвета (эскиз опубликованного снимка, только для чтения)
+     */
+    public HeavyHitters getTopColors() {
+        return topColors;
+    }
+}
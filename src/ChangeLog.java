@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Журнал изменений каталога: только дописывается, у каждой записи свой порядковый номер,
+ * номера растут на единицу без пропусков. Хранятся последние {@link #getCapacity()} записей
+ * в кольцевом буфере; более старые вытесняются.
+ *
+ * Потребитель (кэш, индекс, выгрузка, HTTP-клиент) запоминает номер последней прочитанной
+ * записи и просит {@link #since(long, int)} всё, что после него. Если нужные записи уже
+ * вытеснены, ответ помечен {@link Changes#isReset()}: дельты не хватает, и каталог нужно
+ * перечитать целиком, а потом продолжать с {@link Changes#getLastSequence()}.
+ */
+public final class ChangeLog {
+
+    public enum Type {
+        ADDED("added"),
+        REMOVED("removed"),
+        CLEARED("cleared");
+
+        private final String key;
+
+        Type(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * Запись журнала. Для ADDED хранится добавленный минерал, для REMOVED - ID и название
+     * удалённого, для CLEARED - только номер версии
+     */
+    public static final class Change {
+        private final long sequence;
+        private final long version;
+        private final Type type;
+        private final int mineralId;
+        private final String name;
+        private final Mineral mineral;
+
+        private Change(long sequence, long version, Type type, int mineralId, String name, Mineral mineral) {
+            this.sequence = sequence;
+            this.version = version;
+            this.type = type;
+            this.mineralId = mineralId;
+            this.name = name;
+            this.mineral = mineral;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Версия снимка ({@link CatalogSnapshot#getVersion()}), в которой изменение опубликовано
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * ID минерала или 0 для CLEARED
+         */
+        public int getMineralId() {
+            return mineralId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Копия добавленного минерала (для ADDED) или null
+         */
+        public Mineral getMineral() {
+            if (mineral == null) {
+                return null;
+            }
+            Mineral copy = new Mineral(mineral);
+            copy.setId(mineral.getId());
+            return copy;
+        }
+    }
+
+    /**
+     * Ответ на {@link #since}: записи по порядку и номер, с которого продолжать
+     */
+    public static final class Changes {
+        private final List<Change> changes;
+        private final long lastSequence;
+        private final boolean reset;
+        private final boolean more;
+
+        private Changes(List<Change> changes, long lastSequence, boolean reset, boolean more) {
+            this.changes = changes;
+            this.lastSequence = lastSequence;
+            this.reset = reset;
+            this.more = more;
+        }
+
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        /**
+         * Номер последней отданной записи; при reset - последний номер журнала
+         */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        /**
+         * Запрошенные записи вытеснены из журнала: нужна полная перезагрузка
+         */
+        public boolean isReset() {
+            return reset;
+        }
+
+        /**
+         * Отданы не все записи: следующий запрос - с {@link #getLastSequence()}
+         */
+        public boolean hasMore() {
+            return more;
+        }
+    }
+
+    private final Change[] entries;
+    // Номер последней записи; 0 - журнал пуст
+    private long lastSequence;
+
+    public ChangeLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Ёмкость журнала должна быть положительной: " + capacity);
+        }
+        entries = new Change[capacity];
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Номер самой старой хранимой записи (lastSequence + 1, если журнал пуст)
+     */
+    public synchronized long getFirstSequence() {
+        return Math.max(1, lastSequence - entries.length + 1);
+    }
+
+    /**
+     * Записать добавление; mineral - уже с ID, журнал хранит его как есть
+     */
+    synchronized void added(long version, Mineral mineral) {
+        append(version, Type.ADDED, mineral.getId(), mineral.getName(), mineral);
+    }
+
+    synchronized void removed(long version, Mineral mineral) {
+        append(version, Type.REMOVED, mineral.getId(), mineral.getName(), null);
+    }
+
+    synchronized void cleared(long version) {
+        append(version, Type.CLEARED, 0, null, null);
+    }
+
+    private void append(long version, Type type, int mineralId, String name, Mineral mineral) {
+        lastSequence++;
+        entries[(int) ((lastSequence - 1) % entries.length)] =
+                new Change(lastSequence, version, type, mineralId, name, mineral);
+    }
+
+    /**
+     * Записи с номерами больше after, не больше limit штук
+     */
+    public synchronized Changes since(long after, int limit) {
+        if (after < 0 || after > lastSequence) {
+            throw new IllegalArgumentException("Номер записи должен быть от 0 до " + lastSequence);
+        }
+        long first = Math.max(1, lastSequence - entries.length + 1);
+        if (after + 1 < first) {
+            return new Changes(Collections.emptyList(), lastSequence, true, false);
+        }
+        long end = Math.min(lastSequence, after + limit);
+        List<Change> changes = new ArrayList<>((int) (end - after));
+        for (long sequence = after + 1; sequence <= end; sequence++) {
+            changes.add(entries[(int) ((sequence - 1) % entries.length)]);
+        }
+        return new Changes(changes, end, false, end < lastSequence);
+    }
+}
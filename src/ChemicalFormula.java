@@ -0,0 +1,112 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Разбор химической формулы на элементы: "Cu₃(CO₃)₂(OH)₂" → Cu, C, O, H.
+ * Символ элемента - заглавная латинская буква и, возможно, строчная за ней, причём
+ * двухбуквенный символ берётся, только если такой элемент есть ("Co" в "CoAsS"), а в "CO₃"
+ * строчной буквы нет, и это углерод и кислород. Индексы (обычные и подстрочные цифры),
+ * заряды, скобки, точки гидратов и пробелы пропускаются. Буквы, не составляющие символа
+ * элемента (R в "R²⁺₃", n в "nH₂O"), тоже пропускаются. Заглавные кириллические буквы, похожие
+ * на латинские (С, О, Н...), читаются как латинские.
+ */
+public final class ChemicalFormula {
+
+    // Символы элементов в порядке атомных номеров
+    private static final String[] SYMBOLS = {
+            "H", "He", "Li", "Be", "B", "C", "N", "O", "F", "Ne",
+            "Na", "Mg", "Al", "Si", "P", "S", "Cl", "Ar", "K", "Ca",
+            "Sc", "Ti", "V", "Cr", "Mn", "Fe", "Co", "Ni", "Cu", "Zn",
+            "Ga", "Ge", "As", "Se", "Br", "Kr", "Rb", "Sr", "Y", "Zr",
+            "Nb", "Mo", "Tc", "Ru", "Rh", "Pd", "Ag", "Cd", "In", "Sn",
+            "Sb", "Te", "I", "Xe", "Cs", "Ba", "La", "Ce", "Pr", "Nd",
+            "Pm", "Sm", "Eu", "Gd", "Tb", "Dy", "Ho", "Er", "Tm", "Yb",
+            "Lu", "Hf", "Ta", "W", "Re", "Os", "Ir", "Pt", "Au", "Hg",
+            "Tl", "Pb", "Bi", "Po", "At", "Rn", "Fr", "Ra", "Ac", "Th",
+            "Pa", "U", "Np", "Pu", "Am", "Cm", "Bk", "Cf", "Es", "Fm",
+            "Md", "No", "Lr", "Rf", "Db", "Sg", "Bh", "Hs", "Mt", "Ds",
+            "Rg", "Cn", "Nh", "Fl", "Mc", "Lv", "Ts", "Og"
+    };
+
+    private static final String CYRILLIC_LOOKALIKES = "АВЕКМНОРСТХ";
+    private static final String LATIN_LOOKALIKES = "ABEKMHOPCTX";
+
+    // Символ → атомный номер
+    private static final Map<String, Integer> ELEMENTS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            ELEMENTS.put(SYMBOLS[i], i + 1);
+        }
+    }
+
+    private ChemicalFormula() {
+    }
+
+    /**
+     * Элементы формулы без повторов, в порядке первого появления
+     */
+    public static List<String> elements(String formula) {
+        List<String> result = new ArrayList<>();
+        if (formula == null) {
+            return result;
+        }
+        int length = formula.length();
+        for (int i = 0; i < length; i++) {
+            char c = latin(formula.charAt(i));
+            if (c < 'A' || c > 'Z') {
+                continue;
+            }
+            String symbol = null;
+            if (i + 1 < length) {
+                char next = latin(formula.charAt(i + 1));
+                if (next >= 'a' && next <= 'z' && ELEMENTS.containsKey("" + c + next)) {
+                    symbol = "" + c + next;
+                    i++;
+                }
+            }
+            if (symbol == null) {
+                symbol = String.valueOf(c);
+                if (!ELEMENTS.containsKey(symbol)) {
+                    continue;
+                }
+            }
+            if (!result.contains(symbol)) {
+                result.add(symbol);
+            }
+        }
+        return result;
+    }
+
+    // Заглавные кириллические буквы, которые в формулах каталога встречаются вместо похожих латинских ("Сu₆[Si₆О₁₈]")
+    private static char latin(char c) {
+        int index = CYRILLIC_LOOKALIKES.indexOf(c);
+        return index >= 0 ? LATIN_LOOKALIKES.charAt(index) : c;
+    }
+
+    /**
+     * Символ элемента в обычном написании ("cu", "CU" → "Cu") или null, если такого элемента нет
+     */
+    public static String symbolOf(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty() || trimmed.length() > 2) {
+            return null;
+        }
+        String symbol = trimmed.substring(0, 1).toUpperCase(Locale.ROOT)
+                + trimmed.substring(1).toLowerCase(Locale.ROOT);
+        return ELEMENTS.containsKey(symbol) ? symbol : null;
+    }
+
+    /**
+     * Атомный номер элемента или 0, если такого символа нет
+     */
+    public static int atomicNumber(String symbol) {
+        return ELEMENTS.getOrDefault(symbol, 0);
+    }
+}
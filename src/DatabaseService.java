@@ -1,9 +1,13 @@
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.io.File; 
 public class DatabaseService {
     private static final String DB_URL = "jdbc:sqlite:minerals.db";
+    // Сколько минералов пакетной записи уходит в базу одной транзакцией
+    static final int BULK_BATCH_SIZE = 10_000;
     
     static {
         try {
@@ -106,6 +110,7 @@ public class DatabaseService {
         }
         
         // Загружаем все минералы
+        StringPool.Mark poolMark = StringPool.shared().mark();
         String sql = "SELECT * FROM minerals ORDER BY name";
         ResultSet rs = stmt.executeQuery(sql);
         
@@ -172,6 +177,8 @@ public class DatabaseService {
         }
         
         System.out.println("✅ Загружено " + minerals.size() + " минералов из БД");
+        // Повторяющиеся значения полей сеттеры Mineral уже заменили общими экземплярами
+        System.out.println(StringPool.shared().report(poolMark));
         
     } catch (SQLException e) {
         System.out.println("❌ Ошибка загрузки минералов: " + e.getMessage());
@@ -367,6 +374,114 @@ public class DatabaseService {
         return -1;
     }
     
+    /**
+     * Пакетная запись большого числа минералов (например, из {@link CatalogGenerator}).
+     * В отличие от {@link #saveAllMineralsToDatabase}, запросы готовятся один раз и
+     * отправляются пакетами, ID минералов назначаются подряд после максимального,
+     * месторождения ищутся в памяти, а фиксация идёт каждые {@link #BULK_BATCH_SIZE} записей.
+     * replace - сначала очистить таблицы. Возвращает число зафиксированных в базе минералов
+     */
+    public static int bulkInsertMinerals(Iterable<Mineral> minerals, boolean replace) {
+        String insertMineral = "INSERT INTO minerals (id, name, formula, class, color, " +
+                              "streak_color, luster, hardness, specific_gravity, cleavage, " +
+                              "fracture, genesis, application, additional_properties, " +
+                              "interesting_facts, value_category, image_url) " +
+                              "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String insertLink = "INSERT OR IGNORE INTO minerallocalities (mineral_id, locality_id) VALUES (?, ?)";
+        int savedCount = 0;
+        // Записи уже зафиксированных транзакций - столько останется в базе при ошибке
+        int committedCount = 0;
+
+        try (Connection conn = DriverManager.getConnection(DB_URL)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA foreign_keys = ON");
+                if (replace) {
+                    stmt.execute("DELETE FROM minerallocalities");
+                    stmt.execute("DELETE FROM minerals");
+                    stmt.execute("DELETE FROM localities");
+                }
+            }
+
+            int nextId = 1;
+            Map<String, Integer> localityIds = new HashMap<>();
+            try (Statement stmt = conn.createStatement()) {
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(id), 0) FROM minerals");
+                if (rs.next()) {
+                    nextId = rs.getInt(1) + 1;
+                }
+                rs = stmt.executeQuery("SELECT id, name FROM localities");
+                while (rs.next()) {
+                    localityIds.put(rs.getString("name"), rs.getInt("id"));
+                }
+            }
+
+            try (PreparedStatement pstmtMin = conn.prepareStatement(insertMineral);
+                 PreparedStatement pstmtLink = conn.prepareStatement(insertLink)) {
+                for (Mineral mineral : minerals) {
+                    int mineralId = nextId++;
+                    pstmtMin.setInt(1, mineralId);
+                    pstmtMin.setString(2, mineral.getName());
+                    pstmtMin.setString(3, mineral.getFormula());
+                    pstmtMin.setString(4, mineral.getMineralClass());
+                    pstmtMin.setString(5, mineral.getColor());
+                    pstmtMin.setString(6, mineral.getStreakColor());
+                    pstmtMin.setString(7, mineral.getLuster());
+                    pstmtMin.setString(8, mineral.getHardness());
+                    pstmtMin.setString(9, mineral.getSpecificGravity());
+                    pstmtMin.setString(10, mineral.getCleavage());
+                    pstmtMin.setString(11, mineral.getFracture());
+                    pstmtMin.setString(12, mineral.getGenesis());
+                    pstmtMin.setString(13, mineral.getApplication());
+                    pstmtMin.setString(14, mineral.getAdditionalProperties());
+                    pstmtMin.setString(15, mineral.getInterestingFacts());
+                    pstmtMin.setString(16, mineral.getValueCategory());
+                    pstmtMin.setString(17, mineral.getImageUrl());
+                    pstmtMin.addBatch();
+
+                    if (mineral.getLocation() != null) {
+                        for (String loc : mineral.getLocation().split(",")) {
+                            String locationName = loc.trim();
+                            if (locationName.isEmpty()) {
+                                continue;
+                            }
+                            Integer localityId = localityIds.get(locationName);
+                            if (localityId == null) {
+                                localityId = findOrCreateLocality(conn, locationName);
+                                localityIds.put(locationName, localityId);
+                            }
+                            if (localityId != -1) {
+                                pstmtLink.setInt(1, mineralId);
+                                pstmtLink.setInt(2, localityId);
+                                pstmtLink.addBatch();
+                            }
+                        }
+                    }
+
+                    savedCount++;
+                    if (savedCount % BULK_BATCH_SIZE == 0) {
+                        // Связи ссылаются на минералы, поэтому минералы отправляются первыми
+                        pstmtMin.executeBatch();
+                        pstmtLink.executeBatch();
+                        conn.commit();
+                        committedCount = savedCount;
+                        System.out.println("💾 Сохранено " + savedCount + " минералов...");
+                    }
+                }
+                pstmtMin.executeBatch();
+                pstmtLink.executeBatch();
+            }
+            conn.commit();
+            committedCount = savedCount;
+            System.out.println("✅ Всего сохранено: " + savedCount + " минералов");
+
+        } catch (SQLException e) {
+            System.out.println("❌ Ошибка пакетной записи минералов: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return committedCount;
+    }
+    
     /**
      * Добавить новый минерал через веб-форму
      */
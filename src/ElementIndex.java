@@ -0,0 +1,123 @@
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Индекс состава: для каждого химического элемента хранится {@link IdBitmap} с ID минералов,
+ * в формуле которых он есть (разбор - {@link ChemicalFormula}, при добавлении минерала).
+ * Запрос "есть Cu и O, нет Fe" - пересечение битмапов Cu и O минус битмап Fe,
+ * без прохода по формулам.
+ *
+ * Как и в {@link BitmapIndex}, {@link #copy()} разделяет битмапы с исходным индексом,
+ * а изменяемый битмап копируется при первой записи в него.
+ */
+public class ElementIndex {
+    private final Map<String, IdBitmap> bitmaps;
+    // Битмапы, скопированные этой версией индекса; остальные общие с предыдущей
+    private final Set<String> owned;
+    // Все проиндексированные минералы - основа запроса, в котором есть только исключения
+    private IdBitmap all;
+    private boolean allOwned;
+
+    public ElementIndex() {
+        bitmaps = new HashMap<>();
+        owned = new HashSet<>();
+        all = new IdBitmap();
+        allOwned = true;
+    }
+
+    private ElementIndex(ElementIndex other) {
+        bitmaps = new HashMap<>(other.bitmaps);
+        owned = new HashSet<>();
+        all = other.all;
+    }
+
+    /**
+     * Копия для следующей версии снимка; битмап элемента копируется при первом изменении
+     */
+    public ElementIndex copy() {
+        return new ElementIndex(this);
+    }
+
+    public void add(int id, String formula) {
+        ownAll().add(id);
+        for (String element : ChemicalFormula.elements(formula)) {
+            own(element).add(id);
+        }
+    }
+
+    /**
+     * Убрать минерал; formula - та же формула, что была передана в {@link #add}
+     */
+    public void remove(int id, String formula) {
+        ownAll().remove(id);
+        for (String element : ChemicalFormula.elements(formula)) {
+            if (!bitmaps.containsKey(element)) {
+                continue;
+            }
+            IdBitmap bitmap = own(element);
+            bitmap.remove(id);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(element);
+                owned.remove(element);
+            }
+        }
+    }
+
+    /**
+     * Минералы, в формуле которых есть все элементы included и нет ни одного из excluded.
+     * Символы - в обычном написании ({@link ChemicalFormula#symbolOf}).
+     * Без included отбор идёт от всех минералов. Битмап только для чтения
+     */
+    public IdBitmap matching(Collection<String> included, Collection<String> excluded) {
+        IdBitmap result = all;
+        for (String element : included) {
+            IdBitmap bitmap = bitmaps.get(element);
+            if (bitmap == null) {
+                return new IdBitmap();
+            }
+            result = result == all ? bitmap : result.and(bitmap);
+        }
+        for (String element : excluded) {
+            IdBitmap bitmap = bitmaps.get(element);
+            if (bitmap != null) {
+                result = result.andNot(bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Элементы, встречающиеся хотя бы в одной формуле, с числом минералов
+     */
+    public Map<String, Integer> counts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, IdBitmap> entry : bitmaps.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().cardinality());
+        }
+        return counts;
+    }
+
+    private IdBitmap own(String element) {
+        IdBitmap bitmap = bitmaps.get(element);
+        if (bitmap == null) {
+            bitmap = new IdBitmap();
+            bitmaps.put(element, bitmap);
+            owned.add(element);
+        } else if (owned.add(element)) {
+            bitmap = bitmap.copy();
+            bitmaps.put(element, bitmap);
+        }
+        return bitmap;
+    }
+
+    private IdBitmap ownAll() {
+        if (!allOwned) {
+            all = all.copy();
+            allOwned = true;
+        }
+        return all;
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Счётчики значений (фасеты) по классам, месторождениям, цветам и категориям ценности.
+ * Обновляются при каждом добавлении и удалении, поэтому число различных значений
+ * и гистограмма доступны сразу, без прохода по коллекции.
+ * Значения считаются как есть, включая пустую строку.
+ *
+ * Месторождений и цветов почти столько же, сколько минералов, поэтому счётчики каждого
+ * фасета лежат в {@link PagedHashMap}: запись минерала копирует в каждом фасете одну
+ * небольшую страницу со своим значением, а не все счётчики фасета.
+ */
+public class FacetIndex {
+
+    public enum Facet {
+        MINERAL_CLASS("class", Mineral::getMineralClass),
+        LOCATION("location", Mineral::getLocation),
+        COLOR("color", Mineral::getColor),
+        VALUE_CATEGORY("valueCategory", Mineral::getValueCategory);
+
+        private final String key;
+        private final Function<Mineral, String> extractor;
+
+        Facet(String key, Function<Mineral, String> extractor) {
+            this.key = key;
+            this.extractor = extractor;
+        }
+
+        /**
+         * Имя фасета в HTTP API
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public String valueOf(Mineral mineral) {
+            return extractor.apply(mineral);
+        }
+
+        public static Facet fromKey(String key) {
+            for (Facet facet : values()) {
+                if (facet.key.equalsIgnoreCase(key)) {
+                    return facet;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Map<Facet, PagedHashMap<String, Integer>> counts;
+
+    public FacetIndex() {
+        counts = new EnumMap<>(Facet.class);
+        for (Facet facet : Facet.values()) {
+            counts.put(facet, new PagedHashMap<>());
+        }
+    }
+
+    private FacetIndex(FacetIndex other) {
+        counts = new EnumMap<>(Facet.class);
+        for (Facet facet : Facet.values()) {
+            counts.put(facet, other.counts.get(facet).copy());
+        }
+    }
+
+    /**
+     * Копия для следующей версии снимка: страницы счётчиков общие до первого изменения
+     */
+    public FacetIndex copy() {
+        return new FacetIndex(this);
+    }
+
+    public void add(Mineral mineral) {
+        for (Facet facet : Facet.values()) {
+            counts.get(facet).merge(facet.valueOf(mineral), 1, Integer::sum);
+        }
+    }
+
+    public void remove(Mineral mineral) {
+        for (Facet facet : Facet.values()) {
+            // Счётчик, дошедший до нуля, удаляется вместе со значением
+            counts.get(facet).computeIfPresent(facet.valueOf(mineral),
+                    (value, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Гистограмма значений фасета (только для чтения)
+     */
+    public Map<String, Integer> histogram(Facet facet) {
+        return Collections.unmodifiableMap(counts.get(facet));
+    }
+
+    public int count(Facet facet, String value) {
+        return counts.get(facet).getOrDefault(value, 0);
+    }
+
+    /**
+     * Число различных значений, включая пустое
+     */
+    public int distinctCount(Facet facet) {
+        return counts.get(facet).size();
+    }
+
+    /**
+     * Число различных непустых значений
+     */
+    public int distinctNonBlankCount(Facet facet) {
+        Map<String, Integer> facetCounts = counts.get(facet);
+        return facetCounts.size() - (facetCounts.containsKey("") ? 1 : 0);
+    }
+}
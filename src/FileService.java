@@ -1,15 +1,18 @@
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Сервис для работы с CSV файлами минералов
+ * Сервис для работы с CSV файлами минералов (кодировка UTF-8 независимо от системной)
  */
 public class FileService {
 
     public List<Mineral> importFromCSV(String filename) {
         List<Mineral> minerals = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+        StringPool.Mark poolMark = StringPool.shared().mark();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8))) {
             String line = reader.readLine();
 
             while ((line = reader.readLine()) != null) {
@@ -22,6 +25,7 @@ public class FileService {
                     System.out.println("Ошибка парсинга строки: " + line);
                 }
             }
+            System.out.println(StringPool.shared().report(poolMark));
 
         } catch (IOException e) {
             System.out.println("Ошибка при чтении файла: " + e.getMessage());
@@ -92,8 +96,9 @@ private List<String> parseCSVFields(String line) {
     fields.add(currentField.toString().trim());
     return fields;
 }
-    public void exportToFile(List<Mineral> minerals, String filename) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
+    public void exportToFile(Iterable<Mineral> minerals, String filename) {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(filename), StandardCharsets.UTF_8)))) {
             writer.println("Название;Формула;Класс;Цвет;Цвет черты;Блеск;Твердость;Удельный вес;Спайность;Излом;Генезис;Применение;Дополнительные свойства;Интересные факты;Месторождение;Категория ценности; Изображение");
             for (Mineral mineral : minerals) {
                 writer.printf("%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;%s;%s%n", // 17 мест вместо 15
@@ -0,0 +1,308 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Индекс свёрнутых названий для поиска с опечатками по расстоянию Левенштейна.
+ *
+ * Названия лежат в сжатом префиксном дереве (ребро хранит цепочку букв), а поиск
+ * проходит его, как автомат Левенштейна: для каждого префикса считается строка таблицы
+ * расстояний до запроса, и ветка бросается, как только все значения в строке больше
+ * допуска. Общий префикс считается один раз для всех названий с ним, а ветки,
+ * далёкие от запроса, обрываются через одну-две буквы, поэтому при допуске 1-2
+ * обходится малая часть дерева независимо от числа названий.
+ *
+ * Узлы неизменяемы, изменение копирует путь от корня, поэтому {@link #copy()} стоит O(1).
+ */
+public class FuzzyNameIndex {
+    public static final int MAX_EDITS = 3;
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final int[] NO_IDS = new int[0];
+
+    private static final class Node {
+        // Буквы на ребре от родителя к узлу; у корня пусто
+        final char[] label;
+        // Потомки по возрастанию первой буквы ребра
+        final Node[] children;
+        // ID минералов, название которых заканчивается в этом узле (по возрастанию)
+        final int[] ids;
+
+        Node(char[] label, Node[] children, int[] ids) {
+            this.label = label;
+            this.children = children;
+            this.ids = ids;
+        }
+
+        int childIndex(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label[0];
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        Node withChild(int index, Node child) {
+            Node[] copy = children.clone();
+            copy[index] = child;
+            return new Node(label, copy, ids);
+        }
+    }
+
+    /**
+     * Найденное название: расстояние до запроса и ID минералов (по возрастанию)
+     */
+    public static final class Match {
+        private final String term;
+        private final int distance;
+        private final int[] ids;
+
+        private Match(String term, int distance, int[] ids) {
+            this.term = term;
+            this.distance = distance;
+            this.ids = ids;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        public int[] getIds() {
+            return ids;
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    public FuzzyNameIndex() {
+        this(new Node(new char[0], NO_CHILDREN, NO_IDS), 0);
+    }
+
+    private FuzzyNameIndex(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Копия для следующей версии снимка: узлы общие, изменения копируют путь
+     */
+    public FuzzyNameIndex copy() {
+        return new FuzzyNameIndex(root, size);
+    }
+
+    /**
+     * Число различных названий
+     */
+    public int size() {
+        return size;
+    }
+
+    public void add(int id, String foldedTerm) {
+        root = insert(root, foldedTerm.toCharArray(), 0, id);
+    }
+
+    public void remove(int id, String foldedTerm) {
+        Node updated = delete(root, foldedTerm.toCharArray(), 0, id);
+        root = updated != null ? updated : new Node(new char[0], NO_CHILDREN, NO_IDS);
+    }
+
+    /**
+     * Названия на расстоянии не больше maxEdits от свёрнутого запроса,
+     * по возрастанию расстояния, при равенстве - по названию
+     */
+    public List<Match> search(String foldedQuery, int maxEdits) {
+        Search search = new Search(foldedQuery.toCharArray(), maxEdits);
+        int[] first = search.row(0);
+        for (int i = 0; i < first.length; i++) {
+            first[i] = i;
+        }
+        search.visit(root, 0);
+        search.matches.sort(Comparator.comparingInt(Match::getDistance).thenComparing(Match::getTerm));
+        return search.matches;
+    }
+
+    // Состояние одного поиска: строки таблицы расстояний по глубине и буквы текущего пути
+    private static final class Search {
+        final char[] query;
+        final int maxEdits;
+        final List<Match> matches = new ArrayList<>();
+        int[][] rows = new int[16][];
+        char[] path = new char[16];
+
+        Search(char[] query, int maxEdits) {
+            this.query = query;
+            this.maxEdits = maxEdits;
+        }
+
+        int[] row(int depth) {
+            if (depth >= rows.length) {
+                rows = Arrays.copyOf(rows, depth * 2);
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            if (rows[depth] == null) {
+                rows[depth] = new int[query.length + 1];
+            }
+            return rows[depth];
+        }
+
+        // depth - длина префикса до начала ребра узла; строка rows[depth] для него уже посчитана
+        void visit(Node node, int depth) {
+            for (char c : node.label) {
+                int[] previous = rows[depth];
+                int[] current = row(depth + 1);
+                path[depth] = c;
+                current[0] = previous[0] + 1;
+                int best = current[0];
+                for (int i = 1; i < current.length; i++) {
+                    int substitution = previous[i - 1] + (query[i - 1] == c ? 0 : 1);
+                    int insertion = current[i - 1] + 1;
+                    int deletion = previous[i] + 1;
+                    int value = Math.min(substitution, Math.min(insertion, deletion));
+                    current[i] = value;
+                    if (value < best) {
+                        best = value;
+                    }
+                }
+                depth++;
+                // Дальше по ветке расстояние только растёт
+                if (best > maxEdits) {
+                    return;
+                }
+            }
+            int distance = rows[depth][query.length];
+            if (node.ids.length > 0 && distance <= maxEdits) {
+                matches.add(new Match(new String(path, 0, depth), distance, node.ids));
+            }
+            for (Node child : node.children) {
+                visit(child, depth);
+            }
+        }
+    }
+
+    // offset - сколько букв названия уже пройдено до начала ребра узла
+    private Node insert(Node node, char[] term, int offset, int id) {
+        if (offset == term.length) {
+            if (node.ids.length == 0) {
+                size++;
+            }
+            return new Node(node.label, node.children, withId(node.ids, id));
+        }
+        int index = node.childIndex(term[offset]);
+        if (index < 0) {
+            size++;
+            Node leaf = new Node(Arrays.copyOfRange(term, offset, term.length), NO_CHILDREN, new int[] {id});
+            int insertAt = -index - 1;
+            Node[] children = new Node[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, insertAt);
+            children[insertAt] = leaf;
+            System.arraycopy(node.children, insertAt, children, insertAt + 1, node.children.length - insertAt);
+            return new Node(node.label, children, node.ids);
+        }
+        Node child = node.children[index];
+        int common = commonPrefix(child.label, term, offset);
+        if (common < child.label.length) {
+            // Название расходится с ребром посередине: ребро делится промежуточным узлом
+            Node tail = new Node(Arrays.copyOfRange(child.label, common, child.label.length), child.children, child.ids);
+            child = new Node(Arrays.copyOf(child.label, common), new Node[] {tail}, NO_IDS);
+        }
+        return node.withChild(index, insert(child, term, offset + common, id));
+    }
+
+    // Возвращает null, если узел больше не нужен
+    private Node delete(Node node, char[] term, int offset, int id) {
+        if (offset == term.length) {
+            int[] ids = withoutId(node.ids, id);
+            if (ids == node.ids) {
+                return node;
+            }
+            if (ids.length == 0) {
+                size--;
+            }
+            return compact(new Node(node.label, node.children, ids));
+        }
+        int index = node.childIndex(term[offset]);
+        if (index < 0) {
+            return node;
+        }
+        Node child = node.children[index];
+        if (commonPrefix(child.label, term, offset) < child.label.length) {
+            return node;
+        }
+        Node updated = delete(child, term, offset + child.label.length, id);
+        if (updated == child) {
+            return node;
+        }
+        if (updated != null) {
+            return node.withChild(index, updated);
+        }
+        Node[] children = new Node[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        return compact(new Node(node.label, children, node.ids));
+    }
+
+    // Узел без минералов убирается, если у него нет потомков, и сливается с единственным потомком
+    private Node compact(Node node) {
+        if (node.ids.length > 0 || node.label.length == 0) {
+            return node;
+        }
+        if (node.children.length == 0) {
+            return null;
+        }
+        if (node.children.length == 1) {
+            Node child = node.children[0];
+            char[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+            System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+            return new Node(label, child.children, child.ids);
+        }
+        return node;
+    }
+
+    private static int commonPrefix(char[] label, char[] term, int offset) {
+        int limit = Math.min(label.length, term.length - offset);
+        int i = 0;
+        while (i < limit && label[i] == term[offset + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int[] withId(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return ids;
+        }
+        int insertAt = -position - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, insertAt);
+        result[insertAt] = id;
+        System.arraycopy(ids, insertAt, result, insertAt + 1, ids.length - insertAt);
+        return result;
+    }
+
+    private static int[] withoutId(int[] ids, int id) {
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return ids;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, result.length - position);
+        return result;
+    }
+}
@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Самые частые значения (месторождения, цвета) в ограниченной памяти: эскиз Count-Min
+ * для оценки частоты любого значения и таблица кандидатов в лидеры, как в Space-Saving.
+ *
+ * Count-Min - depth строк по width счётчиков; значение увеличивает по счётчику в каждой
+ * строке, оценка - минимум из них. Оценка не меньше точного числа и с вероятностью
+ * 1 - e^-depth превышает его не больше чем на e/width от общего числа значений
+ * ({@link #errorBound()}). Эскиз поддерживает удаление: счётчики уменьшаются обратно.
+ *
+ * Кандидатов не больше capacity. Новое значение вытесняет кандидата с наименьшей
+ * оценкой, если его собственная оценка больше. Значение, вытесненное и затем
+ * удалениями обогнавшее кандидатов, вернётся в таблицу при следующем добавлении.
+ * Память не зависит ни от числа минералов, ни от числа различных значений.
+ * Пустые значения не учитываются.
+ */
+public class HeavyHitters {
+    public static final int DEFAULT_WIDTH = 2048;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_CAPACITY = 100;
+
+    // Начальные значения хешей строк эскиза
+    private static final int[] SEEDS = {
+            0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F,
+            0x165667B1, 0xD3A2646C, 0xFD7046C5, 0xB55A4F09
+    };
+
+    private final int width;
+    private final int depth;
+    private final int capacity;
+    // counters[row * width + column]
+    private final int[] counters;
+    // Кандидат → оценка на момент последнего изменения
+    private final Map<String, Integer> candidates;
+    private long total;
+    // Наименьшая оценка среди кандидатов; -1 - нужно пересчитать
+    private int minimum = -1;
+
+    public HeavyHitters() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_CAPACITY);
+    }
+
+    public HeavyHitters(int width, int depth, int capacity) {
+        if (width < 1 || depth < 1 || depth > SEEDS.length || capacity < 1) {
+            throw new IllegalArgumentException("Неверные размеры эскиза: width=" + width
+                    + ", depth=" + depth + ", capacity=" + capacity);
+        }
+        this.width = width;
+        this.depth = depth;
+        this.capacity = capacity;
+        counters = new int[width * depth];
+        candidates = new HashMap<>();
+    }
+
+    private HeavyHitters(HeavyHitters other) {
+        width = other.width;
+        depth = other.depth;
+        capacity = other.capacity;
+        counters = Arrays.copyOf(other.counters, other.counters.length);
+        candidates = new HashMap<>(other.candidates);
+        total = other.total;
+        minimum = other.minimum;
+    }
+
+    /**
+     * Копия для следующей версии снимка (размер постоянный: width * depth счётчиков и кандидаты)
+     */
+    public HeavyHitters copy() {
+        return new HeavyHitters(this);
+    }
+
+    public void add(String value) {
+        if (isBlank(value)) {
+            return;
+        }
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int slot = slot(row, value);
+            estimate = Math.min(estimate, ++counters[slot]);
+        }
+        total++;
+
+        Integer previous = candidates.get(value);
+        if (previous != null) {
+            candidates.put(value, estimate);
+            if (previous == minimum) {
+                minimum = -1;
+            }
+            return;
+        }
+        if (candidates.size() < capacity) {
+            candidates.put(value, estimate);
+            minimum = -1;
+            return;
+        }
+        if (estimate > minimum()) {
+            candidates.remove(weakest());
+            candidates.put(value, estimate);
+            minimum = -1;
+        }
+    }
+
+    /**
+     * Убрать значение, ранее переданное в {@link #add}
+     */
+    public void remove(String value) {
+        if (isBlank(value)) {
+            return;
+        }
+        for (int row = 0; row < depth; row++) {
+            int slot = slot(row, value);
+            if (counters[slot] > 0) {
+                counters[slot]--;
+            }
+        }
+        if (total > 0) {
+            total--;
+        }
+        if (candidates.containsKey(value)) {
+            int estimate = estimate(value);
+            if (estimate == 0) {
+                candidates.remove(value);
+            } else {
+                candidates.put(value, estimate);
+            }
+            minimum = -1;
+        }
+    }
+
+    /**
+     * Оценка числа минералов со значением value (сверху)
+     */
+    public int estimate(String value) {
+        if (isBlank(value)) {
+            return 0;
+        }
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[slot(row, value)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Число учтённых значений
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * На сколько оценка может превышать точное число: floor(e / width * total)
+     */
+    public long errorBound() {
+        return (long) Math.floor(Math.E / width * total);
+    }
+
+    /**
+     * Вероятность, с которой оценки укладываются в {@link #errorBound()}: 1 - e^-depth
+     */
+    public double confidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    /**
+     * До limit самых частых значений по убыванию оценки, при равенстве - по алфавиту
+     */
+    public List<Entry> top(int limit) {
+        List<Entry> entries = new ArrayList<>(candidates.size());
+        long error = errorBound();
+        for (String value : candidates.keySet()) {
+            int estimate = estimate(value);
+            entries.add(new Entry(value, estimate, Math.max(0, estimate - error)));
+        }
+        entries.sort((a, b) -> a.estimate != b.estimate
+                ? Long.compare(b.estimate, a.estimate)
+                : a.value.compareTo(b.value));
+        return Collections.unmodifiableList(entries.subList(0, Math.min(limit, entries.size())));
+    }
+
+    private int minimum() {
+        if (minimum < 0) {
+            int result = Integer.MAX_VALUE;
+            for (int estimate : candidates.values()) {
+                result = Math.min(result, estimate);
+            }
+            minimum = result;
+        }
+        return minimum;
+    }
+
+    // Кандидат с наименьшей оценкой; из равных - последний по алфавиту, чтобы выбор был детерминирован
+    private String weakest() {
+        String result = null;
+        int lowest = Integer.MAX_VALUE;
+        for (Map.Entry<String, Integer> entry : candidates.entrySet()) {
+            int estimate = entry.getValue();
+            if (estimate < lowest || (estimate == lowest && entry.getKey().compareTo(result) > 0)) {
+                result = entry.getKey();
+                lowest = estimate;
+            }
+        }
+        return result;
+    }
+
+    private int slot(int row, String value) {
+        // Перемешивание из MurmurHash3, своё для каждой строки
+        int hash = value.hashCode() ^ SEEDS[row];
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return row * width + ((hash & 0x7FFFFFFF) % width);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * Значение с оценкой числа минералов: точное число лежит между getLowerBound
+     * и getEstimate (нижняя граница - с вероятностью {@link #confidence()})
+     */
+    public static final class Entry {
+        private final String value;
+        private final long estimate;
+        private final long lowerBound;
+
+        Entry(String value, long estimate, long lowerBound) {
+            this.value = value;
+            this.estimate = estimate;
+            this.lowerBound = lowerBound;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getEstimate() {
+            return estimate;
+        }
+
+        public long getLowerBound() {
+            return lowerBound;
+        }
+    }
+}
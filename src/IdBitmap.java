@@ -0,0 +1,516 @@
+import java.util.Arrays;
+
+/**
+ * Сжатое множество ID минералов в духе Roaring bitmap.
+ * ID делятся по старшим 16 битам на блоки; в каждом блоке младшие 16 бит хранятся
+ * либо отсортированным массивом (пока их не больше {@link #ARRAY_LIMIT}),
+ * либо битовой картой на 65536 бит. Пересечение и объединение выполняются
+ * поблочно: массив с массивом - слиянием, карта с картой - побитовыми AND/OR по словам.
+ *
+ * Как и {@link NGramIndex}, битмап входит в неизменяемый снимок: {@link #copy()}
+ * разделяет блоки с исходным, а изменяемый блок копируется при первой записи в него.
+ */
+public final class IdBitmap {
+    // Порог, после которого массив занимает больше места, чем битовая карта (8 КБ)
+    static final int ARRAY_LIMIT = 4096;
+
+    private static final int WORDS = 1 << 10;
+
+    private char[] keys;
+    private Container[] containers;
+    private boolean[] owned;
+    private int size;
+
+    public IdBitmap() {
+        keys = new char[4];
+        containers = new Container[4];
+        owned = new boolean[4];
+    }
+
+    private IdBitmap(char[] keys, Container[] containers, boolean[] owned, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.owned = owned;
+        this.size = size;
+    }
+
+    /**
+     * Копия для следующей версии снимка: блоки общие до первого изменения
+     */
+    public IdBitmap copy() {
+        return new IdBitmap(keys.clone(), containers.clone(), new boolean[owned.length], size);
+    }
+
+    public boolean add(int id) {
+        char high = (char) (id >>> 16);
+        int index = indexOf(high);
+        if (index < 0) {
+            index = -(index + 1);
+            insertContainer(index, high, new ArrayContainer());
+        }
+        Container container = own(index);
+        Container updated = container.add((char) id);
+        if (updated == null) {
+            return false;
+        }
+        containers[index] = updated;
+        return true;
+    }
+
+    public boolean remove(int id) {
+        int index = indexOf((char) (id >>> 16));
+        if (index < 0 || !containers[index].contains((char) id)) {
+            return false;
+        }
+        Container updated = own(index).remove((char) id);
+        if (updated.cardinality() == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            System.arraycopy(owned, index + 1, owned, index, size - index - 1);
+            size--;
+            containers[size] = null;
+        } else {
+            containers[index] = updated;
+        }
+        return true;
+    }
+
+    public boolean contains(int id) {
+        int index = indexOf((char) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Пересечение; оба битмапа не меняются
+     */
+    public IdBitmap and(IdBitmap other) {
+        int capacity = Math.max(1, Math.min(size, other.size));
+        IdBitmap result = new IdBitmap(new char[capacity], new Container[capacity], new boolean[capacity], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.appendContainer(keys[i], container, true);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Объединение; оба битмапа не меняются
+     */
+    public IdBitmap or(IdBitmap other) {
+        int capacity = Math.max(1, size + other.size);
+        IdBitmap result = new IdBitmap(new char[capacity], new Container[capacity], new boolean[capacity], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i], false);
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j], false);
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]), true);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Разность: ID этого битмапа, которых нет в other; оба битмапа не меняются
+     */
+    public IdBitmap andNot(IdBitmap other) {
+        int capacity = Math.max(1, size);
+        IdBitmap result = new IdBitmap(new char[capacity], new Container[capacity], new boolean[capacity], 0);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j == other.size || other.keys[j] != keys[i]) {
+                result.appendContainer(keys[i], containers[i], false);
+                continue;
+            }
+            Container container = containers[i].andNot(other.containers[j]);
+            if (container.cardinality() > 0) {
+                result.appendContainer(keys[i], container, true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ID по возрастанию
+     */
+    public int[] toArray() {
+        int[] ids = new int[cardinality()];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset = containers[i].writeTo(keys[i] << 16, ids, offset);
+        }
+        return ids;
+    }
+
+    private int indexOf(char high) {
+        // Блоков обычно единицы, а новые ID попадают в последний
+        if (size > 0 && keys[size - 1] == high) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    private Container own(int index) {
+        if (!owned[index]) {
+            containers[index] = containers[index].copy();
+            owned[index] = true;
+        }
+        return containers[index];
+    }
+
+    private void insertContainer(int index, char high, Container container) {
+        if (size == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+            owned = Arrays.copyOf(owned, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        System.arraycopy(owned, index, owned, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = container;
+        owned[index] = true;
+        size++;
+    }
+
+    private void appendContainer(char high, Container container, boolean isOwned) {
+        keys[size] = high;
+        containers[size] = container;
+        owned[size] = isOwned;
+        size++;
+    }
+
+    // Блок младших 16 бит. Изменяющие методы могут вернуть блок другого вида
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char low);
+
+        // null, если значение уже было
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract Container and(Container other);
+
+        abstract Container or(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract Container copy();
+
+        abstract int writeTo(int base, int[] ids, int offset);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        Container add(char low) {
+            // ID растут в порядке добавления, так что обычно это дописывание в конец
+            int position = cardinality > 0 && values[cardinality - 1] >= low
+                    ? Arrays.binarySearch(values, 0, cardinality, low)
+                    : -(cardinality + 1);
+            if (position >= 0) {
+                return null;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                BitmapContainer bitmap = toBitmap();
+                bitmap.add(low);
+                return bitmap;
+            }
+            position = -(position + 1);
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, values.length * 2));
+            }
+            System.arraycopy(values, position, values, position + 1, cardinality - position);
+            values[position] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int position = Arrays.binarySearch(values, 0, cardinality, low);
+            if (position >= 0) {
+                System.arraycopy(values, position + 1, values, position, cardinality - position - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            ArrayContainer union = new ArrayContainer(result, count);
+            return count > ARRAY_LIMIT ? union.toBitmap() : union;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[Math.max(4, cardinality)];
+            int count = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        @Override
+        int writeTo(int base, int[] ids, int offset) {
+            for (int i = 0; i < cardinality; i++) {
+                ids[offset++] = base | values[i];
+            }
+            return offset;
+        }
+
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer(new long[WORDS], 0);
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        Container add(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                return null;
+            }
+            words[low >>> 6] |= bit;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long bit = 1L << low;
+            if ((words[low >>> 6] & bit) != 0) {
+                words[low >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArray() : this;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[WORDS];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            BitmapContainer intersection = new BitmapContainer(result, count);
+            return count <= ARRAY_LIMIT ? intersection.toArray() : intersection;
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] result = words.clone();
+            if (other instanceof ArrayContainer) {
+                BitmapContainer union = new BitmapContainer(result, cardinality);
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    union.add(array.values[i]);
+                }
+                return union;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result[i] |= otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, count);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            BitmapContainer difference = new BitmapContainer(words.clone(), cardinality);
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char low = array.values[i];
+                    long bit = 1L << low;
+                    if ((difference.words[low >>> 6] & bit) != 0) {
+                        difference.words[low >>> 6] &= ~bit;
+                        difference.cardinality--;
+                    }
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                int count = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    difference.words[i] &= ~otherWords[i];
+                    count += Long.bitCount(difference.words[i]);
+                }
+                difference.cardinality = count;
+            }
+            return difference.cardinality <= ARRAY_LIMIT ? difference.toArray() : difference;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int writeTo(int base, int[] ids, int offset) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    ids[offset++] = base | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
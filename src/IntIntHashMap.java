@@ -0,0 +1,202 @@
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица int → int с открытой адресацией (линейное пробирование).
+ * Ключи и значения хранятся в примитивных массивах, без упаковки в Integer.
+ * Удаление выполняется обратным сдвигом, поэтому "надгробий" в таблице нет.
+ */
+public class IntIntHashMap {
+    private static final int FREE_KEY = 0;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    // Ключ 0 совпадает с маркером пустой ячейки, поэтому хранится отдельно
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntHashMap() {
+        this(16);
+    }
+
+    public IntIntHashMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(4, (int) (expectedSize / LOAD_FACTOR) + 1));
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Копирующий конструктор: два копирования массивов, без перехеширования
+     */
+    public IntIntHashMap(IntIntHashMap other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        mask = other.mask;
+        size = other.size;
+        hasZeroKey = other.hasZeroKey;
+        zeroValue = other.zeroValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) return hasZeroKey;
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Получить значение по ключу или defaultValue, если ключа нет
+     */
+    public int get(int key, int defaultValue) {
+        if (key == FREE_KEY) return hasZeroKey ? zeroValue : defaultValue;
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : defaultValue;
+    }
+
+    public void put(int key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int index = mix(key) & mask;
+        while (keys[index] != FREE_KEY) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Удалить ключ. Возвращает true, если ключ был в таблице
+     */
+    public boolean remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasZeroKey) return false;
+            hasZeroKey = false;
+            size--;
+            return true;
+        }
+        int index = indexOf(key);
+        if (index < 0) return false;
+        shiftKeys(index);
+        size--;
+        return true;
+    }
+
+    /**
+     * Заранее увеличить таблицу под expectedSize ключей, чтобы пакетная вставка не перехешировала её по дороге
+     */
+    public void ensureCapacity(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(4, (int) (expectedSize / LOAD_FACTOR) + 1));
+        if (capacity > keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Обойти все пары ключ → значение в порядке таблицы
+     */
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(FREE_KEY, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    private int indexOf(int key) {
+        int index = mix(key) & mask;
+        while (keys[index] != FREE_KEY) {
+            if (keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Сдвигаем хвост кластера на освободившееся место, чтобы цепочки пробирования не рвались
+    private void shiftKeys(int gap) {
+        int current = gap;
+        while (true) {
+            current = (current + 1) & mask;
+            int key = keys[current];
+            if (key == FREE_KEY) {
+                keys[gap] = FREE_KEY;
+                return;
+            }
+            int home = mix(key) & mask;
+            boolean movable = gap <= current
+                    ? (home <= gap || home > current)
+                    : (home <= gap && home > current);
+            if (movable) {
+                keys[gap] = key;
+                values[gap] = values[current];
+                gap = current;
+            }
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[newCapacity];
+        values = new int[newCapacity];
+        mask = newCapacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != FREE_KEY) {
+                int index = mix(key) & mask;
+                while (keys[index] != FREE_KEY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    // Последовательные ID плохо распределяются по маске, поэтому перемешиваем биты
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(capacity - 1) << 1;
+        return Math.max(4, n);
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.Arrays;
+
+/**
+ * Дерево интервалов [low, high] с ID минералов, например диапазонов твердости.
+ * Узлы упорядочены по (low, id) и хранят наибольший high в своём поддереве,
+ * так что поиск пересечений с запросом отбрасывает поддеревья, где все интервалы
+ * заканчиваются раньше запроса или начинаются позже него: O(log n + k).
+ *
+ * Балансировка - декартово дерево с приоритетом от ID. Узлы неизменяемы, изменение
+ * копирует только путь от корня, поэтому {@link #copy()} стоит O(1), а версия
+ * в опубликованном снимке не меняется.
+ */
+public class IntervalTree {
+
+    private static final class Node {
+        final double low;
+        final double high;
+        final int id;
+        final Node left;
+        final Node right;
+        final double maxHigh;
+        final int size;
+
+        Node(double low, double high, int id, Node left, Node right) {
+            this.low = low;
+            this.high = high;
+            this.id = id;
+            this.left = left;
+            this.right = right;
+            double max = high;
+            if (left != null && left.maxHigh > max) max = left.maxHigh;
+            if (right != null && right.maxHigh > max) max = right.maxHigh;
+            this.maxHigh = max;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        Node withChildren(Node newLeft, Node newRight) {
+            return newLeft == left && newRight == right ? this : new Node(low, high, id, newLeft, newRight);
+        }
+    }
+
+    private Node root;
+
+    public IntervalTree() {
+    }
+
+    private IntervalTree(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Копия для следующей версии снимка: узлы общие, изменения копируют путь
+     */
+    public IntervalTree copy() {
+        return new IntervalTree(root);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * Добавить интервал минерала. Неизвестные границы (NaN) не индексируются
+     */
+    public void add(int id, double low, double high) {
+        if (Double.isNaN(low) || Double.isNaN(high)) {
+            return;
+        }
+        Node[] parts = split(root, low, id);
+        root = merge(merge(parts[0], new Node(low, high, id, null, null)), parts[1]);
+    }
+
+    /**
+     * Добавить count интервалов сразу. В пустое дерево они укладываются без копирования
+     * путей: сортировка по (low, id) и сборка декартова дерева с теми же приоритетами стеком,
+     * за O(n) после сортировки. В непустое дерево интервалы вставляются по одному
+     */
+    public void addAll(int[] ids, double[] lows, double[] highs, int count) {
+        if (root != null) {
+            for (int i = 0; i < count; i++) {
+                add(ids[i], lows[i], highs[i]);
+            }
+            return;
+        }
+        Integer[] order = new Integer[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (!Double.isNaN(lows[i]) && !Double.isNaN(highs[i])) {
+                order[size++] = i;
+            }
+        }
+        Arrays.sort(order, 0, size, (a, b) -> {
+            int byLow = Double.compare(lows[a], lows[b]);
+            return byLow != 0 ? byLow : Integer.compare(ids[a], ids[b]);
+        });
+
+        // Декартово дерево по приоритету: в стеке - правая ветвь уже собранной части
+        int[] left = new int[size];
+        int[] right = new int[size];
+        Arrays.fill(left, -1);
+        Arrays.fill(right, -1);
+        int[] stack = new int[size];
+        int top = 0;
+        for (int i = 0; i < size; i++) {
+            int priority = priority(ids[order[i]]);
+            int last = -1;
+            while (top > 0 && priority(ids[order[stack[top - 1]]]) < priority) {
+                last = stack[--top];
+            }
+            left[i] = last;
+            if (top > 0) {
+                right[stack[top - 1]] = i;
+            }
+            stack[top++] = i;
+        }
+        root = top > 0 ? built(stack[0], order, left, right, ids, lows, highs) : null;
+    }
+
+    /**
+     * Убрать интервал; low - та же нижняя граница, что была передана в {@link #add}
+     */
+    public void remove(int id, double low) {
+        if (Double.isNaN(low)) {
+            return;
+        }
+        root = remove(root, low, id);
+    }
+
+    /**
+     * ID минералов (по возрастанию), интервалы которых пересекаются с [from, to].
+     * Границы запроса включаются, если fromInclusive / toInclusive;
+     * бесконечности задают открытый край
+     */
+    public int[] overlapping(double from, boolean fromInclusive, double to, boolean toInclusive) {
+        IdCollector collector = new IdCollector();
+        collect(root, from, fromInclusive, to, toInclusive, collector);
+        int[] ids = Arrays.copyOf(collector.ids, collector.count);
+        // Обход идёт по нижней границе, а снимку нужны ID по возрастанию
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Пересечение с [from, to], обе границы включительно
+     */
+    public int[] overlapping(double from, double to) {
+        return overlapping(from, true, to, true);
+    }
+
+    private static final class IdCollector {
+        int[] ids = new int[16];
+        int count;
+
+        void add(int id) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+            }
+            ids[count++] = id;
+        }
+    }
+
+    private static void collect(Node node, double from, boolean fromInclusive, double to, boolean toInclusive,
+                                IdCollector collector) {
+        while (node != null) {
+            // Все интервалы поддерева заканчиваются до начала запроса
+            if (fromInclusive ? node.maxHigh < from : node.maxHigh <= from) {
+                return;
+            }
+            collect(node.left, from, fromInclusive, to, toInclusive, collector);
+            // Узел и всё правое поддерево начинаются после конца запроса
+            if (toInclusive ? node.low > to : node.low >= to) {
+                return;
+            }
+            if (fromInclusive ? node.high >= from : node.high > from) {
+                collector.add(node.id);
+            }
+            node = node.right;
+        }
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static int compare(double low, int id, Node node) {
+        int byLow = Double.compare(low, node.low);
+        return byLow != 0 ? byLow : Integer.compare(id, node.id);
+    }
+
+    // Разделить на узлы с ключом меньше (low, id) и остальные
+    private static Node[] split(Node node, double low, int id) {
+        if (node == null) {
+            return new Node[2];
+        }
+        if (compare(low, id, node) > 0) {
+            Node[] parts = split(node.right, low, id);
+            parts[0] = node.withChildren(node.left, parts[0]);
+            return parts;
+        }
+        Node[] parts = split(node.left, low, id);
+        parts[1] = node.withChildren(parts[1], node.right);
+        return parts;
+    }
+
+    // Слить два дерева, где все ключи left меньше ключей right
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (priority(left.id) > priority(right.id)) {
+            return left.withChildren(left.left, merge(left.right, right));
+        }
+        return right.withChildren(merge(left, right.left), right.right);
+    }
+
+    private static Node built(int index, Integer[] order, int[] left, int[] right,
+                              int[] ids, double[] lows, double[] highs) {
+        Node leftChild = left[index] >= 0 ? built(left[index], order, left, right, ids, lows, highs) : null;
+        Node rightChild = right[index] >= 0 ? built(right[index], order, left, right, ids, lows, highs) : null;
+        int i = order[index];
+        return new Node(lows[i], highs[i], ids[i], leftChild, rightChild);
+    }
+
+    private static Node remove(Node node, double low, int id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(low, id, node);
+        if (cmp == 0) {
+            return merge(node.left, node.right);
+        }
+        return cmp < 0
+                ? node.withChildren(remove(node.left, low, id), node.right)
+                : node.withChildren(node.left, remove(node.right, low, id));
+    }
+
+    // Приоритет узла декартова дерева: перемешанный ID, одинаковый во всех версиях
+    private static int priority(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
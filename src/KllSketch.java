@@ -0,0 +1,342 @@
+import java.util.Arrays;
+
+/**
+ * Потоковый эскиз квантилей KLL (Karnin, Lang, Liberty): хранит O(k) значений
+ * вместо всех и отвечает на "какое значение на уровне q" и "какая доля не больше x"
+ * с погрешностью ранга порядка 1,7/k (около 1% при k = 200).
+ *
+ * Значения лежат по уровням-компакторам: на уровне h каждое значение весит 2^h.
+ * Переполненный уровень сортируется, и каждое второе значение (чётные или нечётные
+ * позиции по очереди) переходит на уровень выше с удвоенным весом. Ёмкость уровня
+ * убывает вниз в 2/3 раза, поэтому нижние, лёгкие уровни короткие.
+ *
+ * Эскизы сливаются ({@link #merge}): уровни складываются и сжимаются так же, поэтому
+ * эскизы отдельных частей каталога (классов, шардов, версий) объединяются без исходных
+ * данных. Удаление значений не поддерживается. Выбор чётных/нечётных позиций
+ * детерминирован, поэтому одинаковый поток значений даёт одинаковый эскиз.
+ */
+public class KllSketch {
+    public static final int DEFAULT_K = 200;
+    // Ниже этой ёмкости уровни не сжимаются
+    private static final int MIN_CAPACITY = 8;
+    private static final double DECAY = 2.0 / 3.0;
+
+    private final int k;
+    // levels[h][0..sizes[h]) - значения уровня h
+    private double[][] levels;
+    private int[] sizes;
+    private int levelCount;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    // Чередование чётных и нечётных позиций при сжатии, по биту на уровень
+    private long parity;
+    // Отсортированные значения с накопленными весами; сбрасывается при изменении.
+    // Опубликованный эскиз читают несколько потоков, поэтому представление - один объект с final-полями
+    private SortedView sorted;
+
+    private static final class SortedView {
+        final double[] values;
+        final long[] cumulativeWeights;
+
+        SortedView(double[] values, long[] cumulativeWeights) {
+            this.values = values;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+    }
+
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    public KllSketch(int k) {
+        if (k < MIN_CAPACITY) {
+            throw new IllegalArgumentException("k должно быть не меньше " + MIN_CAPACITY + ": " + k);
+        }
+        this.k = k;
+        levels = new double[][] {new double[k]};
+        sizes = new int[1];
+        levelCount = 1;
+    }
+
+    private KllSketch(KllSketch other) {
+        k = other.k;
+        levels = new double[other.levels.length][];
+        for (int h = 0; h < other.levelCount; h++) {
+            levels[h] = Arrays.copyOf(other.levels[h], other.levels[h].length);
+        }
+        sizes = Arrays.copyOf(other.sizes, other.sizes.length);
+        levelCount = other.levelCount;
+        count = other.count;
+        min = other.min;
+        max = other.max;
+        parity = other.parity;
+        sorted = other.sorted;
+    }
+
+    public KllSketch copy() {
+        return new KllSketch(this);
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Сколько значений учтено (с учётом слитых эскизов)
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Точный минимум или NaN для пустого эскиза
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Точный максимум или NaN для пустого эскиза
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Учесть значение; NaN пропускается
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        compress();
+        sorted = null;
+    }
+
+    /**
+     * Добавить в этот эскиз все значения other. Эскизы с разным k сливаются,
+     * погрешность результата - по меньшему k
+     */
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int h = 0; h < other.levelCount; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compress();
+        sorted = null;
+    }
+
+    /**
+     * Значение на уровне rank (0..1): rank = 0,5 - медиана. NaN для пустого эскиза
+     */
+    public double quantile(double rank) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (rank <= 0) {
+            return min;
+        }
+        if (rank >= 1) {
+            return max;
+        }
+        SortedView view = sortedView();
+        long total = view.cumulativeWeights[view.cumulativeWeights.length - 1];
+        long target = (long) Math.ceil(rank * total);
+        int index = Arrays.binarySearch(view.cumulativeWeights, target);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return view.values[Math.min(index, view.values.length - 1)];
+    }
+
+    /**
+     * Оценка доли значений, не превышающих value
+     */
+    public double rank(double value) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        SortedView view = sortedView();
+        // Последняя позиция со значением <= value
+        int low = 0;
+        int high = view.values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (view.values[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        long total = view.cumulativeWeights[view.cumulativeWeights.length - 1];
+        return low == 0 ? 0 : (double) view.cumulativeWeights[low - 1] / total;
+    }
+
+    /**
+     * Оценка числа значений в интервалах, заданных возрастающими границами splits:
+     * (-∞, s0], (s0, s1], ..., (s_last, +∞) - всего splits.length + 1 чисел
+     */
+    public long[] histogram(double[] splits) {
+        long[] result = new long[splits.length + 1];
+        if (count == 0) {
+            return result;
+        }
+        // Разности округлённых накопленных чисел: в сумме ровно count
+        long previous = 0;
+        for (int i = 0; i < splits.length; i++) {
+            long current = Math.round(rank(splits[i]) * count);
+            result[i] = current - previous;
+            previous = current;
+        }
+        result[splits.length] = count - previous;
+        return result;
+    }
+
+    /**
+     * Сколько значений хранит эскиз (для оценки памяти)
+     */
+    public int retained() {
+        int retained = 0;
+        for (int h = 0; h < levelCount; h++) {
+            retained += sizes[h];
+        }
+        return retained;
+    }
+
+    /**
+     * Хранимые значения по возрастанию (только для чтения)
+     */
+    double[] sortedValues() {
+        return sortedView().values;
+    }
+
+    private void append(int level, double value) {
+        while (level >= levelCount) {
+            addLevel();
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, levels[level].length * 2));
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    private void addLevel() {
+        if (levelCount == levels.length) {
+            levels = Arrays.copyOf(levels, levelCount * 2);
+            sizes = Arrays.copyOf(sizes, levelCount * 2);
+        }
+        levels[levelCount] = new double[MIN_CAPACITY];
+        sizes[levelCount] = 0;
+        levelCount++;
+    }
+
+    // Ёмкость уровня h: k на верхнем уровне, ниже - в 2/3 раза меньше на каждый шаг
+    private int capacity(int level) {
+        int depth = levelCount - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(DECAY, depth)));
+    }
+
+    private void compress() {
+        while (true) {
+            int retained = 0;
+            int totalCapacity = 0;
+            for (int h = 0; h < levelCount; h++) {
+                retained += sizes[h];
+                totalCapacity += capacity(h);
+            }
+            if (retained < totalCapacity) {
+                return;
+            }
+            int level = 0;
+            while (level < levelCount && sizes[level] < capacity(level)) {
+                level++;
+            }
+            if (level == levelCount) {
+                return;
+            }
+            compact(level);
+        }
+    }
+
+    // Половина значений уровня уходит на уровень выше; при нечётном числе одно остаётся
+    private void compact(int level) {
+        int size = sizes[level];
+        double[] values = levels[level];
+        Arrays.sort(values, 0, size);
+        double kept = Double.NaN;
+        if ((size & 1) == 1) {
+            kept = values[size - 1];
+            size--;
+        }
+        long bit = 1L << Math.min(level, 63);
+        int offset = (parity & bit) == 0 ? 0 : 1;
+        parity ^= bit;
+        if (level + 1 >= levelCount) {
+            addLevel();
+            values = levels[level];
+        }
+        for (int i = offset; i < size; i += 2) {
+            append(level + 1, values[i]);
+        }
+        sizes[level] = 0;
+        if (!Double.isNaN(kept)) {
+            levels[level][sizes[level]++] = kept;
+        }
+    }
+
+    private SortedView sortedView() {
+        SortedView view = sorted;
+        if (view != null) {
+            return view;
+        }
+        int retained = retained();
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int position = 0;
+        for (int h = 0; h < levelCount; h++) {
+            long weight = 1L << h;
+            for (int i = 0; i < sizes[h]; i++) {
+                values[position] = levels[h][i];
+                weights[position] = weight;
+                position++;
+            }
+        }
+        Integer[] order = new Integer[retained];
+        for (int i = 0; i < retained; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[retained];
+        long[] cumulative = new long[retained];
+        long sum = 0;
+        for (int i = 0; i < retained; i++) {
+            sortedValues[i] = values[order[i]];
+            sum += weights[order[i]];
+            cumulative[i] = sum;
+        }
+        view = new SortedView(sortedValues, cumulative);
+        sorted = view;
+        return view;
+    }
+}
@@ -25,6 +25,27 @@ public class Mineral implements Serializable {
     private String location;
     private String valueCategory;
     private String imageUrl;
+
+    // Границы твердости по Моосу, разобранные из hardness один раз в сеттере (NaN - не указана)
+    private double hardnessMin = Double.NaN;
+    private double hardnessMax = Double.NaN;
+    // Границы плотности (г/см³), разобранные из specificGravity так же
+    private double specificGravityMin = Double.NaN;
+    private double specificGravityMax = Double.NaN;
+
+    // Свёрнутые формы (нижний регистр, "ё" → "е") для фильтров и поиска.
+    // Считаются при первом обращении и сбрасываются сеттерами
+    private transient String foldedName;
+    private transient String foldedFormula;
+    private transient String foldedMineralClass;
+    private transient String foldedColor;
+    private transient String foldedLocation;
+    private transient String foldedApplication;
+    private transient String foldedInterestingFacts;
+    private transient String foldedValueCategory;
+    private transient String foldedLuster;
+    private transient String foldedCleavage;
+    private transient String foldedGenesis;
    
 
     /**
@@ -83,6 +104,81 @@ public class Mineral implements Serializable {
         setImageUrl(imageUrl);
     }
 
+    /**
+     * Запись, собранная из столбцов каталога ({@link MineralColumns#materialize}): строки уже
+     * обрезаны и взяты из словарей, границы твердости и плотности разобраны при записи,
+     * поэтому сеттеры (обрезка, пул строк, разбор диапазонов) не вызываются
+     */
+    Mineral(int id, String name, String formula, String mineralClass, String color,
+            String streakColor, String luster, String hardness, String specificGravity,
+            String cleavage, String fracture, String genesis, String application,
+            String additionalProperties, String interestingFacts, String location, String valueCategory,
+            String imageUrl, double hardnessMin, double hardnessMax,
+            double specificGravityMin, double specificGravityMax) {
+        this.id = id;
+        this.name = name;
+        this.formula = formula;
+        this.mineralClass = mineralClass;
+        this.color = color;
+        this.streakColor = streakColor;
+        this.luster = luster;
+        this.hardness = hardness;
+        this.specificGravity = specificGravity;
+        this.cleavage = cleavage;
+        this.fracture = fracture;
+        this.genesis = genesis;
+        this.application = application;
+        this.additionalProperties = additionalProperties;
+        this.interestingFacts = interestingFacts;
+        this.location = location;
+        this.valueCategory = valueCategory;
+        this.imageUrl = imageUrl;
+        this.hardnessMin = hardnessMin;
+        this.hardnessMax = hardnessMax;
+        this.specificGravityMin = specificGravityMin;
+        this.specificGravityMax = specificGravityMax;
+    }
+
+    /**
+     * Копия без ID. Поля уже приведены сеттерами исходного минерала, поэтому
+     * копируются как есть, вместе с разобранными границами и свёрнутыми формами
+     */
+    public Mineral(Mineral other) {
+        this.id = -1;
+        this.name = other.name;
+        this.formula = other.formula;
+        this.mineralClass = other.mineralClass;
+        this.color = other.color;
+        this.streakColor = other.streakColor;
+        this.luster = other.luster;
+        this.hardness = other.hardness;
+        this.specificGravity = other.specificGravity;
+        this.cleavage = other.cleavage;
+        this.fracture = other.fracture;
+        this.genesis = other.genesis;
+        this.application = other.application;
+        this.additionalProperties = other.additionalProperties;
+        this.interestingFacts = other.interestingFacts;
+        this.location = other.location;
+        this.valueCategory = other.valueCategory;
+        this.imageUrl = other.imageUrl;
+        this.hardnessMin = other.hardnessMin;
+        this.hardnessMax = other.hardnessMax;
+        this.specificGravityMin = other.specificGravityMin;
+        this.specificGravityMax = other.specificGravityMax;
+        this.foldedName = other.foldedName;
+        this.foldedFormula = other.foldedFormula;
+        this.foldedMineralClass = other.foldedMineralClass;
+        this.foldedColor = other.foldedColor;
+        this.foldedLocation = other.foldedLocation;
+        this.foldedApplication = other.foldedApplication;
+        this.foldedInterestingFacts = other.foldedInterestingFacts;
+        this.foldedValueCategory = other.foldedValueCategory;
+        this.foldedLuster = other.foldedLuster;
+        this.foldedCleavage = other.foldedCleavage;
+        this.foldedGenesis = other.foldedGenesis;
+    }
+
     /**
      * Пустой конструктор (для сериализации/десериализации)
      */
@@ -126,8 +222,109 @@ public class Mineral implements Serializable {
     public String getLocation() { return location; }
     public String getValueCategory() {return valueCategory; }
     public String getImageUrl() { return imageUrl; }
+    public double getHardnessMin() { return hardnessMin; }
+    public double getHardnessMax() { return hardnessMax; }
+    public double getSpecificGravityMin() { return specificGravityMin; }
+    public double getSpecificGravityMax() { return specificGravityMax; }
+
+    // Свёрнутые формы текстовых полей (см. TextFolding)
+    public String getFoldedName() {
+        String folded = foldedName;
+        if (folded == null) {
+            foldedName = folded = TextFolding.fold(name);
+        }
+        return folded;
+    }
+
+    public String getFoldedFormula() {
+        String folded = foldedFormula;
+        if (folded == null) {
+            foldedFormula = folded = TextFolding.fold(formula);
+        }
+        return folded;
+    }
+
+    public String getFoldedMineralClass() {
+        String folded = foldedMineralClass;
+        if (folded == null) {
+            foldedMineralClass = folded = TextFolding.fold(mineralClass);
+        }
+        return folded;
+    }
+
+    public String getFoldedColor() {
+        String folded = foldedColor;
+        if (folded == null) {
+            foldedColor = folded = TextFolding.fold(color);
+        }
+        return folded;
+    }
+
+    public String getFoldedLocation() {
+        String folded = foldedLocation;
+        if (folded == null) {
+            foldedLocation = folded = TextFolding.fold(location);
+        }
+        return folded;
+    }
+
+    public String getFoldedApplication() {
+        String folded = foldedApplication;
+        if (folded == null) {
+            foldedApplication = folded = TextFolding.fold(application);
+        }
+        return folded;
+    }
+
+    public String getFoldedInterestingFacts() {
+        String folded = foldedInterestingFacts;
+        if (folded == null) {
+            foldedInterestingFacts = folded = TextFolding.fold(interestingFacts);
+        }
+        return folded;
+    }
+
+    public String getFoldedValueCategory() {
+        String folded = foldedValueCategory;
+        if (folded == null) {
+            foldedValueCategory = folded = TextFolding.fold(valueCategory);
+        }
+        return folded;
+    }
+
+    public String getFoldedLuster() {
+        String folded = foldedLuster;
+        if (folded == null) {
+            foldedLuster = folded = TextFolding.fold(luster);
+        }
+        return folded;
+    }
+
+    public String getFoldedCleavage() {
+        String folded = foldedCleavage;
+        if (folded == null) {
+            foldedCleavage = folded = TextFolding.fold(cleavage);
+        }
+        return folded;
+    }
+
+    public String getFoldedGenesis() {
+        String folded = foldedGenesis;
+        if (folded == null) {
+            foldedGenesis = folded = TextFolding.fold(genesis);
+        }
+        return folded;
+    }
     
 
+    /**
+     * Значение признака, который повторяется у многих минералов: обрезается
+     * и заменяется общим экземпляром из {@link StringPool}
+     */
+    private static String pooled(String value) {
+        return value != null ? StringPool.shared().intern(value.trim()) : "";
+    }
+
     // Сеттеры
     public void setId(int id) {
         this.id = id;
@@ -135,50 +332,64 @@ public class Mineral implements Serializable {
 
     public void setName(String name) {
         this.name = name != null ? name.trim() : "";
+        this.foldedName = null;
     }
 
     public void setFormula(String formula) {
         this.formula = formula != null ? formula.trim() : "";
+        this.foldedFormula = null;
     }
 
     public void setMineralClass(String mineralClass) {
-        this.mineralClass = mineralClass != null ? mineralClass.trim() : "";
+        this.mineralClass = pooled(mineralClass);
+        this.foldedMineralClass = null;
     }
 
     public void setColor(String color) {
-        this.color = color != null ? color.trim() : "";
+        this.color = pooled(color);
+        this.foldedColor = null;
     }
 
     public void setStreakColor(String streakColor) {
-        this.streakColor = streakColor != null ? streakColor.trim() : "";
+        this.streakColor = pooled(streakColor);
     }
 
     public void setLuster(String luster) {
-        this.luster = luster != null ? luster.trim() : "";
+        this.luster = pooled(luster);
+        this.foldedLuster = null;
     }
 
     public void setHardness(String hardness) {
-        this.hardness = hardness != null ? hardness.trim() : "";
+        this.hardness = pooled(hardness);
+        NumericRange range = NumericRange.parse(this.hardness);
+        this.hardnessMin = range.getMin();
+        this.hardnessMax = range.getMax();
     }
 
     public void setSpecificGravity(String specificGravity) {
-        this.specificGravity = specificGravity != null ? specificGravity.trim() : "";
+        this.specificGravity = pooled(specificGravity);
+        NumericRange range = NumericRange.parse(this.specificGravity);
+        this.specificGravityMin = range.getMin();
+        this.specificGravityMax = range.getMax();
     }
 
     public void setCleavage(String cleavage) {
-        this.cleavage = cleavage != null ? cleavage.trim() : "";
+        this.cleavage = pooled(cleavage);
+        this.foldedCleavage = null;
     }
 
     public void setFracture(String fracture) {
-        this.fracture = fracture != null ? fracture.trim() : "";
+        this.fracture = pooled(fracture);
     }
 
     public void setGenesis(String genesis) {
-        this.genesis = genesis != null ? genesis.trim() : "";
+        this.genesis = pooled(genesis);
+        this.foldedGenesis = null;
     }
 
     public void setApplication(String application) {
         this.application = application != null ? application.trim() : "";
+        this.foldedApplication = null;
     }
 
     public void setAdditionalProperties(String additionalProperties) {
@@ -187,14 +398,17 @@ public class Mineral implements Serializable {
 
     public void setInterestingFacts(String interestingFacts) {
         this.interestingFacts = interestingFacts != null ? interestingFacts.trim() : "";
+        this.foldedInterestingFacts = null;
     }
 
     public void setLocation(String location) {
-        this.location = location != null ? location.trim() : "";
+        this.location = pooled(location);
+        this.foldedLocation = null;
     }
 
     public void setValueCategory(String valueCategory) {
-    this.valueCategory = valueCategory != null ? valueCategory.trim() : "";
+    this.valueCategory = pooled(valueCategory);
+    this.foldedValueCategory = null;
     }
 
         public void setImageUrl(String imageUrl) { // Добавили сеттер для imageUrl
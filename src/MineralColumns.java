@@ -0,0 +1,439 @@
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Столбцовое хранилище минералов (одна версия).
+ * Вместо объекта {@link Mineral} с восемнадцатью строками на запись хранятся массивы по полям:
+ * повторяющиеся признаки (класс, блеск, спайность, категория ценности и т.п.) - кодами
+ * в {@link StringDictionary}, длинные уникальные тексты (название, формула, применение,
+ * факты) - подряд в общем массиве символов со смещениями. Объекты Mineral создаются
+ * только при выдаче наружу ({@link #materialize(int)}), а фильтры работают прямо по столбцам.
+ *
+ * Как и слоты снимка, массивы общие с более новыми версиями: те только дописывают
+ * строки за {@code rowCount}, а удаление копирует столбец ID.
+ */
+public final class MineralColumns {
+
+    public enum Column {
+        NAME(false, Mineral::getName),
+        FORMULA(false, Mineral::getFormula),
+        MINERAL_CLASS(true, Mineral::getMineralClass),
+        COLOR(true, Mineral::getColor),
+        STREAK_COLOR(true, Mineral::getStreakColor),
+        LUSTER(true, Mineral::getLuster),
+        HARDNESS(true, Mineral::getHardness),
+        SPECIFIC_GRAVITY(true, Mineral::getSpecificGravity),
+        CLEAVAGE(true, Mineral::getCleavage),
+        FRACTURE(true, Mineral::getFracture),
+        GENESIS(true, Mineral::getGenesis),
+        APPLICATION(false, Mineral::getApplication),
+        ADDITIONAL_PROPERTIES(false, Mineral::getAdditionalProperties),
+        INTERESTING_FACTS(false, Mineral::getInterestingFacts),
+        LOCATION(true, Mineral::getLocation),
+        VALUE_CATEGORY(true, Mineral::getValueCategory),
+        IMAGE_URL(false, Mineral::getImageUrl);
+
+        private final boolean encoded;
+        private final Function<Mineral, String> extractor;
+
+        Column(boolean encoded, Function<Mineral, String> extractor) {
+            this.encoded = encoded;
+            this.extractor = extractor;
+        }
+
+        /**
+         * Хранится ли столбец кодами словаря (иначе - упакованным текстом)
+         */
+        public boolean isEncoded() {
+            return encoded;
+        }
+
+        String valueOf(Mineral mineral) {
+            String value = extractor.apply(mineral);
+            return value != null ? value : "";
+        }
+    }
+
+    private static final Column[] COLUMNS = Column.values();
+    // Номер столбца среди словарных или среди текстовых
+    private static final int[] SLOT = new int[COLUMNS.length];
+    private static final int ENCODED_COUNT;
+    private static final int PACKED_COUNT;
+
+    static {
+        int encoded = 0;
+        int packed = 0;
+        for (Column column : COLUMNS) {
+            SLOT[column.ordinal()] = column.encoded ? encoded++ : packed++;
+        }
+        ENCODED_COUNT = encoded;
+        PACKED_COUNT = packed;
+    }
+
+    private final int rowCount;
+    // ID по строкам; 0 - строка удалена
+    private final int[] ids;
+    private final int[][] codes;
+    private final StringDictionary[] dictionaries;
+    // Текстовые столбцы строки идут подряд: начало поля k строки r - offsets[r * PACKED_COUNT + k]
+    private final char[] text;
+    private final int textLength;
+    private final int[] offsets;
+
+    private MineralColumns(int rowCount, int[] ids, int[][] codes, StringDictionary[] dictionaries,
+                           char[] text, int textLength, int[] offsets) {
+        this.rowCount = rowCount;
+        this.ids = ids;
+        this.codes = codes;
+        this.dictionaries = dictionaries;
+        this.text = text;
+        this.textLength = textLength;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Новое пустое хранилище. Общий пустой экземпляр не годится: версии дописывают в его массивы
+     */
+    static MineralColumns empty() {
+        int capacity = 16;
+        int[][] codes = new int[ENCODED_COUNT][];
+        StringDictionary[] dictionaries = new StringDictionary[ENCODED_COUNT];
+        for (Column column : COLUMNS) {
+            if (column.encoded) {
+                codes[SLOT[column.ordinal()]] = new int[capacity];
+                dictionaries[SLOT[column.ordinal()]] = StringDictionary.empty(isNumeric(column));
+            }
+        }
+        return new MineralColumns(0, new int[capacity], codes, dictionaries,
+                new char[1024], 0, new int[capacity * PACKED_COUNT]);
+    }
+
+    private static boolean isNumeric(Column column) {
+        return column == Column.HARDNESS || column == Column.SPECIFIC_GRAVITY;
+    }
+
+    /**
+     * Число строк, включая удалённые
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public boolean isLive(int row) {
+        return ids[row] != 0;
+    }
+
+    public int id(int row) {
+        return ids[row];
+    }
+
+    public String get(Column column, int row) {
+        if (column.encoded) {
+            int slot = SLOT[column.ordinal()];
+            return dictionaries[slot].value(codes[slot][row]);
+        }
+        int start = start(column, row);
+        return new String(text, start, end(column, row) - start);
+    }
+
+    /**
+     * Нижняя граница твердости или плотности строки (NaN - не указана)
+     */
+    public double min(Column column, int row) {
+        int slot = SLOT[column.ordinal()];
+        return dictionaries[slot].min(codes[slot][row]);
+    }
+
+    /**
+     * Верхняя граница твердости или плотности строки (NaN - не указана)
+     */
+    public double max(Column column, int row) {
+        int slot = SLOT[column.ordinal()];
+        return dictionaries[slot].max(codes[slot][row]);
+    }
+
+    /**
+     * Условие "свёрнутое значение столбца содержит свёрнутый term".
+     * Для словарного столбца подходящие коды вычисляются один раз по словарю
+     */
+    public IntPredicate containing(Column column, String term) {
+        if (column.encoded) {
+            return codeFilter(column, value -> value.contains(term));
+        }
+        return row -> regionContains(start(column, row), end(column, row), term);
+    }
+
+    /**
+     * Условие "хотя бы один из столбцов содержит свёрнутый term"
+     */
+    public IntPredicate containingAny(String term, Column... columns) {
+        IntPredicate result = containing(columns[0], term);
+        for (int i = 1; i < columns.length; i++) {
+            result = result.or(containing(columns[i], term));
+        }
+        return result;
+    }
+
+    /**
+     * Условие "свёрнутое значение столбца равно свёрнутому term"
+     */
+    public IntPredicate equalTo(Column column, String term) {
+        if (column.encoded) {
+            return codeFilter(column, value -> value.equals(term));
+        }
+        return row -> {
+            int start = start(column, row);
+            return end(column, row) - start == term.length() && regionContains(start, start + term.length(), term);
+        };
+    }
+
+    /**
+     * Сравнение значений столбца двух строк в порядке String.compareTo
+     */
+    public int compare(Column column, int row, int otherRow) {
+        if (column.encoded) {
+            return get(column, row).compareTo(get(column, otherRow));
+        }
+        int start = start(column, row);
+        int length = end(column, row) - start;
+        int otherStart = start(column, otherRow);
+        int otherLength = end(column, otherRow) - otherStart;
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            char c = text[start + i];
+            char other = text[otherStart + i];
+            if (c != other) {
+                return c - other;
+            }
+        }
+        return length - otherLength;
+    }
+
+    /**
+     * Собрать Mineral для выдачи наружу; каждый вызов создаёт новый объект.
+     * Значения словарных столбцов передаются как есть, границы - уже разобранные словарём
+     */
+    public Mineral materialize(int row) {
+        return new Mineral(
+                ids[row],
+                get(Column.NAME, row),
+                get(Column.FORMULA, row),
+                get(Column.MINERAL_CLASS, row),
+                get(Column.COLOR, row),
+                get(Column.STREAK_COLOR, row),
+                get(Column.LUSTER, row),
+                get(Column.HARDNESS, row),
+                get(Column.SPECIFIC_GRAVITY, row),
+                get(Column.CLEAVAGE, row),
+                get(Column.FRACTURE, row),
+                get(Column.GENESIS, row),
+                get(Column.APPLICATION, row),
+                get(Column.ADDITIONAL_PROPERTIES, row),
+                get(Column.INTERESTING_FACTS, row),
+                get(Column.LOCATION, row),
+                get(Column.VALUE_CATEGORY, row),
+                get(Column.IMAGE_URL, row),
+                min(Column.HARDNESS, row),
+                max(Column.HARDNESS, row),
+                min(Column.SPECIFIC_GRAVITY, row),
+                max(Column.SPECIFIC_GRAVITY, row));
+    }
+
+    private IntPredicate codeFilter(Column column, Predicate<String> foldedCheck) {
+        int slot = SLOT[column.ordinal()];
+        StringDictionary dictionary = dictionaries[slot];
+        boolean[] matching = new boolean[dictionary.size()];
+        for (int code = 0; code < matching.length; code++) {
+            matching[code] = foldedCheck.test(dictionary.folded(code));
+        }
+        int[] columnCodes = codes[slot];
+        return row -> matching[columnCodes[row]];
+    }
+
+    // Содержит ли текст [start, end) свёрнутый term; свёртка посимвольная, как в TextFolding.fold
+    private boolean regionContains(int start, int end, String term) {
+        int length = term.length();
+        if (length == 0) {
+            return true;
+        }
+        char first = term.charAt(0);
+        search:
+        for (int i = start; i <= end - length; i++) {
+            if (TextFolding.foldChar(text[i]) != first) {
+                continue;
+            }
+            for (int j = 1; j < length; j++) {
+                if (TextFolding.foldChar(text[i + j]) != term.charAt(j)) {
+                    continue search;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private int start(Column column, int row) {
+        return offsets[row * PACKED_COUNT + SLOT[column.ordinal()]];
+    }
+
+    private int end(Column column, int row) {
+        int next = row * PACKED_COUNT + SLOT[column.ordinal()] + 1;
+        return next < (row + 1) * PACKED_COUNT || row + 1 < rowCount ? offsets[next] : textLength;
+    }
+
+    /**
+     * Начать сборку следующей версии. Вызывать только под блокировкой писателя
+     */
+    Builder edit() {
+        return new Builder(this);
+    }
+
+    /**
+     * Дописывание и удаление строк для следующей версии
+     */
+    static final class Builder {
+        private int rowCount;
+        private int[] ids;
+        private int[][] codes;
+        private final StringDictionary.Builder[] dictionaries;
+        private char[] text;
+        private int textLength;
+        private int[] offsets;
+        private boolean idsOwned;
+
+        private Builder(MineralColumns base) {
+            rowCount = base.rowCount;
+            ids = base.ids;
+            codes = base.codes;
+            dictionaries = new StringDictionary.Builder[ENCODED_COUNT];
+            for (int i = 0; i < ENCODED_COUNT; i++) {
+                dictionaries[i] = base.dictionaries[i].edit();
+            }
+            text = base.text;
+            textLength = base.textLength;
+            offsets = base.offsets;
+        }
+
+        int rowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Дописать строку; возвращает её номер
+         */
+        int append(Mineral mineral) {
+            if (rowCount == ids.length) {
+                grow(ids.length * 2);
+            }
+            int row = rowCount;
+            ids[row] = mineral.getId();
+            for (Column column : COLUMNS) {
+                String value = column.valueOf(mineral);
+                int slot = SLOT[column.ordinal()];
+                if (column.encoded) {
+                    codes[slot][row] = dictionaries[slot].encode(value);
+                } else {
+                    offsets[row * PACKED_COUNT + slot] = appendText(value);
+                }
+            }
+            rowCount++;
+            return row;
+        }
+
+        /**
+         * Заранее расширить массивы ещё на additionalRows строк
+         */
+        void reserve(int additionalRows) {
+            int rows = rowCount + additionalRows;
+            if (rows > ids.length) {
+                grow(Math.max(rows, ids.length * 2));
+            }
+        }
+
+        /**
+         * Пометить строку удалённой
+         */
+        void delete(int row) {
+            if (!idsOwned) {
+                ids = ids.clone();
+                idsOwned = true;
+            }
+            ids[row] = 0;
+        }
+
+        /**
+         * Переписать живые строки подряд в новые массивы; словари сохраняются
+         */
+        void compact() {
+            MineralColumns current = build();
+            int live = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (current.isLive(row)) live++;
+            }
+            int capacity = Math.max(16, Integer.highestOneBit(Math.max(1, live)) << 1);
+            int[] newIds = new int[capacity];
+            int[][] newCodes = new int[ENCODED_COUNT][capacity];
+            int[] newOffsets = new int[capacity * PACKED_COUNT];
+            char[] newText = new char[Math.max(1024, textLength)];
+            int newTextLength = 0;
+            int target = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (!current.isLive(row)) {
+                    continue;
+                }
+                newIds[target] = ids[row];
+                for (int slot = 0; slot < ENCODED_COUNT; slot++) {
+                    newCodes[slot][target] = codes[slot][row];
+                }
+                for (Column column : COLUMNS) {
+                    if (column.encoded) continue;
+                    int start = current.start(column, row);
+                    int length = current.end(column, row) - start;
+                    newOffsets[target * PACKED_COUNT + SLOT[column.ordinal()]] = newTextLength;
+                    System.arraycopy(text, start, newText, newTextLength, length);
+                    newTextLength += length;
+                }
+                target++;
+            }
+            ids = newIds;
+            codes = newCodes;
+            offsets = newOffsets;
+            text = newText;
+            textLength = newTextLength;
+            rowCount = target;
+            idsOwned = true;
+        }
+
+        MineralColumns build() {
+            StringDictionary[] built = new StringDictionary[ENCODED_COUNT];
+            for (int i = 0; i < ENCODED_COUNT; i++) {
+                built[i] = dictionaries[i].build();
+            }
+            return new MineralColumns(rowCount, ids, codes, built, text, textLength, offsets);
+        }
+
+        // Рост копирует массивы строк: старые версии продолжают читать прежние
+        private void grow(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+            int[][] grownCodes = new int[ENCODED_COUNT][];
+            for (int slot = 0; slot < ENCODED_COUNT; slot++) {
+                grownCodes[slot] = Arrays.copyOf(codes[slot], capacity);
+            }
+            codes = grownCodes;
+            offsets = Arrays.copyOf(offsets, capacity * PACKED_COUNT);
+            idsOwned = true;
+        }
+
+        private int appendText(String value) {
+            int start = textLength;
+            if (textLength + value.length() > text.length) {
+                text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + value.length()));
+            }
+            value.getChars(0, value.length(), text, textLength);
+            textLength += value.length();
+            return start;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Составной запрос: набор условий, которые должны выполняться одновременно.
+ * Строковая форма - условия "поле:значение" через пробел, например
+ * {@code class:Силикаты color:зел hardness:>5 valueCategory:поделочный luster:стеклянный}.
+ * Значение с пробелами берётся в кавычки: {@code location:"Южный Урал"}.
+ * Слово без поля ищется по всем полям, как в searchInAllFields.
+ *
+ * Текстовые условия сравниваются без учёта регистра и "ё":
+ * класс - на точное совпадение, остальные поля - на вхождение подстроки.
+ * Твердость и плотность (specificGravity) задаются как {@code >5}, {@code >=5}, {@code <5},
+ * {@code <=5}, {@code 5} или {@code 5-7} и сравниваются с диапазоном минерала: подходит минерал,
+ * диапазон которого пересекается с запрошенным. Минералы без указанного значения не подходят.
+ */
+public final class MineralQuery {
+
+    public enum Field {
+        NAME("name"),
+        MINERAL_CLASS("class"),
+        COLOR("color"),
+        LOCATION("location"),
+        VALUE_CATEGORY("valueCategory"),
+        LUSTER("luster"),
+        CLEAVAGE("cleavage"),
+        GENESIS("genesis"),
+        HARDNESS("hardness"),
+        SPECIFIC_GRAVITY("specificGravity"),
+        TEXT("text");
+
+        private final String key;
+
+        Field(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public static Field fromKey(String key) {
+            for (Field field : values()) {
+                if (field.key.equalsIgnoreCase(key)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Одно условие запроса
+     */
+    public static final class Criterion {
+        private final Field field;
+        // Свёрнутое значение для текстовых полей
+        private final String term;
+        // Границы для твердости и плотности
+        private final double low;
+        private final boolean lowInclusive;
+        private final double high;
+        private final boolean highInclusive;
+        private final String source;
+
+        private Criterion(Field field, String term, double low, boolean lowInclusive,
+                          double high, boolean highInclusive, String source) {
+            this.field = field;
+            this.term = term;
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+            this.source = source;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Свёрнутое значение (см. TextFolding); для твердости и плотности - null
+         */
+        public String getTerm() {
+            return term;
+        }
+
+        public boolean isNumeric() {
+            return term == null;
+        }
+
+        public double getLow() {
+            return low;
+        }
+
+        public boolean isLowInclusive() {
+            return lowInclusive;
+        }
+
+        public double getHigh() {
+            return high;
+        }
+
+        public boolean isHighInclusive() {
+            return highInclusive;
+        }
+
+        public boolean matches(Mineral mineral) {
+            switch (field) {
+                case NAME:
+                    return mineral.getFoldedName().contains(term);
+                case MINERAL_CLASS:
+                    return mineral.getFoldedMineralClass().equals(term);
+                case COLOR:
+                    return mineral.getFoldedColor().contains(term);
+                case LOCATION:
+                    return mineral.getFoldedLocation().contains(term);
+                case VALUE_CATEGORY:
+                    return mineral.getFoldedValueCategory().contains(term);
+                case LUSTER:
+                    return mineral.getFoldedLuster().contains(term);
+                case CLEAVAGE:
+                    return mineral.getFoldedCleavage().contains(term);
+                case GENESIS:
+                    return mineral.getFoldedGenesis().contains(term);
+                case HARDNESS:
+                    return overlaps(mineral.getHardnessMin(), mineral.getHardnessMax());
+                case SPECIFIC_GRAVITY:
+                    return overlaps(mineral.getSpecificGravityMin(), mineral.getSpecificGravityMax());
+                default:
+                    return mineral.getFoldedName().contains(term) ||
+                            mineral.getFoldedFormula().contains(term) ||
+                            mineral.getFoldedMineralClass().contains(term) ||
+                            mineral.getFoldedColor().contains(term) ||
+                            mineral.getFoldedLocation().contains(term) ||
+                            mineral.getFoldedApplication().contains(term) ||
+                            mineral.getFoldedInterestingFacts().contains(term);
+            }
+        }
+
+        /**
+         * То же условие над строками столбцового хранилища, без сборки Mineral
+         */
+        public IntPredicate rowMatcher(MineralColumns columns) {
+            switch (field) {
+                case NAME:
+                    return columns.containing(MineralColumns.Column.NAME, term);
+                case MINERAL_CLASS:
+                    return columns.equalTo(MineralColumns.Column.MINERAL_CLASS, term);
+                case COLOR:
+                    return columns.containing(MineralColumns.Column.COLOR, term);
+                case LOCATION:
+                    return columns.containing(MineralColumns.Column.LOCATION, term);
+                case VALUE_CATEGORY:
+                    return columns.containing(MineralColumns.Column.VALUE_CATEGORY, term);
+                case LUSTER:
+                    return columns.containing(MineralColumns.Column.LUSTER, term);
+                case CLEAVAGE:
+                    return columns.containing(MineralColumns.Column.CLEAVAGE, term);
+                case GENESIS:
+                    return columns.containing(MineralColumns.Column.GENESIS, term);
+                case HARDNESS:
+                    return row -> overlaps(columns.min(MineralColumns.Column.HARDNESS, row),
+                            columns.max(MineralColumns.Column.HARDNESS, row));
+                case SPECIFIC_GRAVITY:
+                    return row -> overlaps(columns.min(MineralColumns.Column.SPECIFIC_GRAVITY, row),
+                            columns.max(MineralColumns.Column.SPECIFIC_GRAVITY, row));
+                default:
+                    return columns.containingAny(term, CatalogIndexes.SEARCHABLE_COLUMNS);
+            }
+        }
+
+        // Пересекается ли диапазон [min, max] с границами условия; NaN не пересекается ни с чем
+        private boolean overlaps(double min, double max) {
+            if (Double.isNaN(min)) {
+                return false;
+            }
+            boolean aboveLow = lowInclusive ? max >= low : max > low;
+            boolean belowHigh = highInclusive ? min <= high : min < high;
+            return aboveLow && belowHigh;
+        }
+
+        @Override
+        public String toString() {
+            boolean quoted = source.chars().anyMatch(Character::isWhitespace);
+            return field.getKey() + ":" + (quoted ? "\"" + source + "\"" : source);
+        }
+    }
+
+    private static final MineralQuery EMPTY = new MineralQuery(Collections.emptyList());
+
+    private final List<Criterion> criteria;
+
+    private MineralQuery(List<Criterion> criteria) {
+        this.criteria = criteria;
+    }
+
+    public static MineralQuery empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Новый запрос с дополнительным условием; исходный не меняется
+     *
+     * @throws IllegalArgumentException если значение пустое или число задано неверно
+     */
+    public MineralQuery and(Field field, String value) {
+        List<Criterion> extended = new ArrayList<>(criteria.size() + 1);
+        extended.addAll(criteria);
+        extended.add(criterion(field, value));
+        return new MineralQuery(Collections.unmodifiableList(extended));
+    }
+
+    /**
+     * Разобрать строку запроса
+     *
+     * @throws IllegalArgumentException при неизвестном поле, пустом значении или незакрытой кавычке
+     */
+    public static MineralQuery parse(String text) {
+        MineralQuery query = EMPTY;
+        if (text == null) {
+            return query;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int tokenStart = i;
+            int colon = -1;
+            while (i < length && !Character.isWhitespace(text.charAt(i)) && text.charAt(i) != '"') {
+                if (colon < 0 && text.charAt(i) == ':') {
+                    colon = i;
+                }
+                i++;
+            }
+            String value;
+            if (i < length && text.charAt(i) == '"') {
+                int closing = text.indexOf('"', i + 1);
+                if (closing < 0) {
+                    throw new IllegalArgumentException("Незакрытая кавычка в запросе: " + text.substring(tokenStart));
+                }
+                value = text.substring(colon >= 0 ? colon + 1 : tokenStart, i) + text.substring(i + 1, closing);
+                i = closing + 1;
+            } else {
+                value = text.substring(colon >= 0 ? colon + 1 : tokenStart, i);
+            }
+
+            Field field = Field.TEXT;
+            if (colon >= 0) {
+                String key = text.substring(tokenStart, colon);
+                field = Field.fromKey(key);
+                if (field == null) {
+                    throw new IllegalArgumentException("Неизвестное поле запроса: " + key);
+                }
+            }
+            query = query.and(field, value);
+        }
+        return query;
+    }
+
+    public List<Criterion> getCriteria() {
+        return criteria;
+    }
+
+    public boolean isEmpty() {
+        return criteria.isEmpty();
+    }
+
+    public boolean matches(Mineral mineral) {
+        for (Criterion criterion : criteria) {
+            if (!criterion.matches(mineral)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Criterion criterion(Field field, String value) {
+        String trimmed = value == null ? "" : value.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Пустое значение для поля " + field.getKey());
+        }
+        if (field != Field.HARDNESS && field != Field.SPECIFIC_GRAVITY) {
+            return new Criterion(field, TextFolding.fold(trimmed), Double.NaN, false, Double.NaN, false, trimmed);
+        }
+
+        String operator = "";
+        for (String candidate : new String[] {">=", "<=", ">", "<", "="}) {
+            if (trimmed.startsWith(candidate)) {
+                operator = candidate;
+                break;
+            }
+        }
+        NumericRange range = NumericRange.parse(trimmed.substring(operator.length()));
+        if (!range.isKnown()) {
+            throw new IllegalArgumentException("Значение " + field.getKey() + " должно быть числом или диапазоном: " + trimmed);
+        }
+        switch (operator) {
+            case ">":
+                return new Criterion(field, null, range.getMin(), false, Double.POSITIVE_INFINITY, true, trimmed);
+            case ">=":
+                return new Criterion(field, null, range.getMin(), true, Double.POSITIVE_INFINITY, true, trimmed);
+            case "<":
+                return new Criterion(field, null, Double.NEGATIVE_INFINITY, true, range.getMax(), false, trimmed);
+            case "<=":
+                return new Criterion(field, null, Double.NEGATIVE_INFINITY, true, range.getMax(), true, trimmed);
+            default:
+                return new Criterion(field, null, range.getMin(), true, range.getMax(), true, trimmed);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Criterion criterion : criteria) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(criterion);
+        }
+        return sb.toString();
+    }
+}
@@ -1,12 +1,60 @@
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 /**
- * Сервис для управления коллекцией минералов
+ * Сервис для управления коллекцией минералов.
+ * Коллекция хранится как неизменяемый {@link CatalogSnapshot}: методы чтения берут
+ * текущий снимок без блокировок, методы записи собирают новую версию под общей
+ * блокировкой писателя и публикуют её одной volatile-записью.
+ * Записи снимка лежат по столбцам ({@link MineralColumns}), поэтому возвращаемые
+ * объекты Mineral - собранные для ответа копии, а не сами хранимые записи.
  */
 public class MineralService {
-    private final List<Mineral> minerals = new ArrayList<>();
-    private int nextId = 1;
+    // С этого размера сортировка ключей идёт через Arrays.parallelSort
+    static final int PARALLEL_SORT_THRESHOLD = 10_000;
+    // Длина блоков, которые sortRows упорядочивает вставками перед слияниями
+    private static final int SORT_RUN = 32;
+    // Сколько последних изменений хранит журнал
+    static final int CHANGE_LOG_CAPACITY = 10_000;
+
+    private volatile CatalogSnapshot snapshot;
+    private final Object writeLock = new Object();
+    // ID выдаются под блокировкой писателя, поэтому растут в порядке добавления
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // Дописывается под блокировкой писателя сразу после публикации версии
+    private final ChangeLog changeLog = new ChangeLog(CHANGE_LOG_CAPACITY);
+
+    private enum SortKey { NAME, HARDNESS }
+
+    // Отсортированные минералы конкретной версии снимка, уже собранные в неизменяемый список
+    private static final class SortedView {
+        final long version;
+        final List<Mineral> minerals;
+
+        SortedView(long version, List<Mineral> minerals) {
+            this.version = version;
+            this.minerals = minerals;
+        }
+    }
+
+    // Кэш по ключу сортировки; устаревшее представление пересобирается при первом обращении
+    private final AtomicReferenceArray<SortedView> sortedViews = new AtomicReferenceArray<>(SortKey.values().length);
+
+    public MineralService() {
+        this(ParallelScan.shared());
+    }
+
+    /**
+     * Сервис с заданными настройками параллельных проходов
+     * (например, {@link ParallelScan#sequential()} для однопоточной работы)
+     */
+    public MineralService(ParallelScan scan) {
+        snapshot = CatalogSnapshot.empty(scan);
+    }
 
     private String cleanText(String text) {
         if (text == null) return "";
@@ -15,42 +63,95 @@ public class MineralService {
                 .trim();
     }
 
+    /**
+     * Текущий опубликованный снимок коллекции
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Журнал изменений: по нему потребители забирают дельты вместо полной перезагрузки
+     */
+    public ChangeLog getChangeLog() {
+        return changeLog;
+    }
+
     // CRUD операции
     public void addMineral(String name, String formula, String mineralClass, String color,
                            String streakColor, String luster, String hardness, String specificGravity,
                            String cleavage, String fracture, String genesis, String application,
                            String additionalProperties, String interestingFacts, String location, String imageUrl) {
-        Mineral newMineral = new Mineral(nextId++, name, formula, mineralClass, color, streakColor,
+        Mineral newMineral = new Mineral(name, formula, mineralClass, color, streakColor,
                 luster, hardness, specificGravity, cleavage, fracture, genesis, application,
                 additionalProperties, interestingFacts, location, "", imageUrl); // Добавлено: пустая строка для valueCategory
-        minerals.add(newMineral);
+        publish(Collections.singletonList(newMineral));
     }
 
     public void addMineral(Mineral mineral) {
-        Mineral newMineral = new Mineral(nextId++,
-                mineral.getName(),
-                mineral.getFormula(),
-                mineral.getMineralClass(),
-                mineral.getColor(),
-                mineral.getStreakColor(),
-                mineral.getLuster(),
-                mineral.getHardness(),
-                mineral.getSpecificGravity(),
-                mineral.getCleavage(),
-                mineral.getFracture(),
-                mineral.getGenesis(),
-                mineral.getApplication(),
-                mineral.getAdditionalProperties(),
-                mineral.getInterestingFacts(),
-                mineral.getLocation(),
-                mineral.getValueCategory(), 
-                mineral.getImageUrl()); 
-        minerals.add(newMineral);
-    }
-
-    public void addAllMinerals(List<Mineral> mineralsToAdd) {
-        for (Mineral mineral : mineralsToAdd) {
-            addMineral(mineral);
+        publish(Collections.singletonList(new Mineral(mineral)));
+    }
+
+    /**
+     * Добавить минералы пакетом, одной новой версией. Копии снимаются без повторного
+     * разбора полей, а индексы строятся один раз на весь пакет (см. {@link CatalogIndexes#addAll})
+     */
+    public void addAllMinerals(Collection<Mineral> mineralsToAdd) {
+        synchronized (writeLock) {
+            List<Mineral> copies = numberedCopies(mineralsToAdd);
+            CatalogSnapshot.Builder builder = snapshot.edit();
+            builder.addAll(copies);
+            snapshot = builder.build();
+            logAdded(copies);
+        }
+    }
+
+    /**
+     * Заменить всю коллекцию: очистка и пакетная загрузка публикуются одной версией,
+     * поэтому читатели не видят пустой каталог посередине. ID снова начинаются с 1
+     */
+    public void replaceAllMinerals(Collection<Mineral> minerals) {
+        synchronized (writeLock) {
+            CatalogSnapshot.Builder builder = snapshot.edit();
+            builder.clear();
+            nextId.set(1);
+            List<Mineral> copies = numberedCopies(minerals);
+            builder.addAll(copies);
+            snapshot = builder.build();
+            changeLog.cleared(snapshot.getVersion());
+            logAdded(copies);
+        }
+    }
+
+    // Копии с новыми ID; вызывается под блокировкой писателя
+    private List<Mineral> numberedCopies(Collection<Mineral> minerals) {
+        List<Mineral> copies = new ArrayList<>(minerals.size());
+        for (Mineral mineral : minerals) {
+            Mineral copy = new Mineral(mineral);
+            copy.setId(nextId.getAndIncrement());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    // Добавить новые минералы одной версией снимка
+    private void publish(List<Mineral> newMinerals) {
+        synchronized (writeLock) {
+            CatalogSnapshot.Builder builder = snapshot.edit();
+            for (Mineral mineral : newMinerals) {
+                mineral.setId(nextId.getAndIncrement());
+                builder.add(mineral);
+            }
+            snapshot = builder.build();
+            logAdded(newMinerals);
+        }
+    }
+
+    // Записать в журнал добавленные минералы опубликованной версии
+    private void logAdded(List<Mineral> added) {
+        long version = snapshot.getVersion();
+        for (Mineral mineral : added) {
+            changeLog.added(version, mineral);
         }
     }
 
@@ -60,32 +161,45 @@ public class MineralService {
      * Удалить минерал по ID
      */
     public boolean removeMineralById(int id) {
-        return minerals.removeIf(mineral -> mineral.getId() == id);
+        synchronized (writeLock) {
+            CatalogSnapshot.Builder builder = snapshot.edit();
+            Mineral removed = builder.remove(id);
+            snapshot = builder.build();
+            if (removed != null) {
+                changeLog.removed(snapshot.getVersion(), removed);
+            }
+            return removed != null;
+        }
     }
 
     /**
      * Удалить минерал по названию (точное совпадение)
      */
     public boolean removeMineralByName(String name) {
-        return minerals.removeIf(mineral -> mineral.getName().equalsIgnoreCase(name));
+        synchronized (writeLock) {
+            CatalogSnapshot.Builder builder = snapshot.edit();
+            List<Mineral> removed = builder.removeIf(mineral -> mineral.getName().equalsIgnoreCase(name));
+            snapshot = builder.build();
+            for (Mineral mineral : removed) {
+                changeLog.removed(snapshot.getVersion(), mineral);
+            }
+            return !removed.isEmpty();
+        }
     }
 
     /**
      * Получить минерал по ID
      */
     public Mineral getMineralById(int id) {
-        return minerals.stream()
-                .filter(mineral -> mineral.getId() == id)
-                .findFirst()
-                .orElse(null);
+        return snapshot.get(id);
     }
 
     /**
      * Получить все ID минералов
      */
     public List<Integer> getAllMineralIds() {
-        return minerals.stream()
-                .map(Mineral::getId)
+        return Arrays.stream(snapshot.ids())
+                .boxed()
                 .collect(Collectors.toList());
     }
 
@@ -96,235 +210,509 @@ public class MineralService {
         if (name == null || name.trim().isEmpty()) {
             return new ArrayList<>();
         }
-        return minerals.stream()
-                .filter(mineral -> mineral.getName().toLowerCase().contains(name.toLowerCase()))
-                .collect(Collectors.toList());
+        String term = TextFolding.fold(name);
+        CatalogSnapshot current = snapshot;
+        IntPredicate matches = current.columns().containing(MineralColumns.Column.NAME, term);
+        int[] candidates = current.indexes().getNameGrams().candidates(term);
+        if (candidates == null) {
+            // Запрос короче триграммы - индекс не поможет
+            return current.select(matches);
+        }
+        return current.resolve(candidates, matches);
+    }
+
+    /**
+     * Поиск по названию с опечатками: "Халцидон" найдёт "Халцедон".
+     * Допуск выбирается по длине запроса - одна правка до 5 букв, дальше две
+     */
+    public List<Mineral> searchByNameFuzzy(String name) {
+        if (name == null) {
+            return new ArrayList<>();
+        }
+        return searchByNameFuzzy(name, name.trim().length() <= 5 ? 1 : 2);
+    }
+
+    /**
+     * Минералы, название которых отличается от запроса не больше чем на maxEdits
+     * вставок, удалений или замен букв (без учёта регистра и "ё").
+     * Сначала точные совпадения, затем по возрастанию числа правок и по названию.
+     * Допуск ограничен {@link FuzzyNameIndex#MAX_EDITS}: при большем совпадает почти всё
+     */
+    public List<Mineral> searchByNameFuzzy(String name, int maxEdits) {
+        if (name == null || name.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        int edits = Math.max(0, Math.min(maxEdits, FuzzyNameIndex.MAX_EDITS));
+        CatalogSnapshot current = snapshot;
+        List<Mineral> result = new ArrayList<>();
+        for (FuzzyNameIndex.Match match : current.indexes().getFuzzyNames().search(TextFolding.fold(name.trim()), edits)) {
+            result.addAll(current.resolve(match.getIds()));
+        }
+        return result;
     }
 
     public List<Mineral> filterByClass(String mineralClass) {
         if (mineralClass == null || mineralClass.trim().isEmpty()) {
             return new ArrayList<>();
         }
-        return minerals.stream()
-                .filter(mineral -> mineral.getMineralClass().equalsIgnoreCase(mineralClass))
-                .collect(Collectors.toList());
+        CatalogSnapshot current = snapshot;
+        IdBitmap matched = current.indexes().getBitmaps()
+                .equalTo(BitmapIndex.Attribute.MINERAL_CLASS, TextFolding.fold(mineralClass));
+        return current.resolve(matched.toArray());
     }
 
     public List<Mineral> filterByColor(String color) {
         if (color == null || color.trim().isEmpty()) {
             return new ArrayList<>();
         }
-        return minerals.stream()
-                .filter(mineral -> mineral.getColor().toLowerCase().contains(color.toLowerCase()))
-                .collect(Collectors.toList());
+        CatalogSnapshot current = snapshot;
+        return current.select(current.columns().containing(MineralColumns.Column.COLOR, TextFolding.fold(color)));
     }
 
     public List<Mineral> filterByLocation(String location) {
         if (location == null || location.trim().isEmpty()) {
             return new ArrayList<>();
         }
-        return minerals.stream()
-                .filter(mineral -> mineral.getLocation().toLowerCase().contains(location.toLowerCase()))
-                .collect(Collectors.toList());
+        CatalogSnapshot current = snapshot;
+        return current.select(current.columns().containing(MineralColumns.Column.LOCATION, TextFolding.fold(location)));
     }
     
     public List<Mineral> filterByValueCategory(String valueCategory) {
         if (valueCategory == null || valueCategory.trim().isEmpty()) {
-            return new ArrayList<>(minerals);
+            return getAllMinerals();
         }
         
-        String searchTerm = valueCategory.toLowerCase().trim();
-        return minerals.stream()
-                .filter(m -> m.getValueCategory() != null && 
-                             m.getValueCategory().toLowerCase().contains(searchTerm))
-                .collect(Collectors.toList());
+        CatalogSnapshot current = snapshot;
+        IdBitmap matched = current.indexes().getBitmaps()
+                .containing(BitmapIndex.Attribute.VALUE_CATEGORY, TextFolding.fold(valueCategory.trim()));
+        return current.resolve(matched.toArray());
     }
     
+    /**
+     * Минералы, диапазон твердости которых пересекается с [min, max] (границы включительно).
+     * NaN или бесконечность вместо границы - открытый край; твердость без чисел не подходит
+     */
+    public List<Mineral> filterByHardnessRange(double min, double max) {
+        CatalogSnapshot current = snapshot;
+        return filterByRange(current, current.indexes().getHardness(), min, max);
+    }
+
+    /**
+     * Минералы, диапазон плотности которых пересекается с [min, max], по тем же правилам,
+     * что и {@link #filterByHardnessRange}
+     */
+    public List<Mineral> filterBySpecificGravityRange(double min, double max) {
+        CatalogSnapshot current = snapshot;
+        return filterByRange(current, current.indexes().getSpecificGravity(), min, max);
+    }
+
+    private static List<Mineral> filterByRange(CatalogSnapshot current, IntervalTree tree, double min, double max) {
+        double from = Double.isNaN(min) ? Double.NEGATIVE_INFINITY : min;
+        double to = Double.isNaN(max) ? Double.POSITIVE_INFINITY : max;
+        if (from > to) {
+            return new ArrayList<>();
+        }
+        return current.resolve(tree.overlapping(from, to));
+    }
+
     // Методы сортировки
+
+    /**
+     * Минералы по названию (неизменяемый список). Список собирается один раз
+     * на версию коллекции и пересобирается только после её изменения; повторные
+     * вызовы возвращают тот же список с теми же объектами, их нельзя изменять
+     */
     public List<Mineral> sortByName() {
-        return minerals.stream()
-                .sorted(Comparator.comparing(Mineral::getName))
-                .collect(Collectors.toList());
+        return sortedView(SortKey.NAME);
     }
 
+    /**
+     * Минералы по нижней границе твердости (неуказанная считается 0).
+     * Порядок кэшируется так же, как у {@link #sortByName()}
+     */
     public List<Mineral> sortByHardness() {
-        return minerals.stream()
-                .sorted((m1, m2) -> {
-                    Double hardness1 = extractHardnessValue(m1.getHardness());
-                    Double hardness2 = extractHardnessValue(m2.getHardness());
-                    return Double.compare(hardness1, hardness2);
-                })
-                .collect(Collectors.toList());
+        return sortedView(SortKey.HARDNESS);
     }
 
-    private Double extractHardnessValue(String hardness) {
-        if (hardness == null || hardness.isEmpty()) {
-            return 0.0;
-        }
-
-        try {
-            // Убираем лишние пробелы
-            String clean = hardness.trim();
+    /**
+     * Версия коллекции: растёт при каждом изменении
+     */
+    public long getMutationVersion() {
+        return snapshot.getVersion();
+    }
 
-            // Заменяем запятые на точки
-            clean = clean.replace(',', '.');
+    private List<Mineral> sortedView(SortKey key) {
+        CatalogSnapshot current = snapshot;
+        SortedView view = sortedViews.get(key.ordinal());
+        if (view == null || view.version != current.getVersion()) {
+            int[] sorted = key == SortKey.NAME ? sortByName(current) : sortByHardness(current);
+            view = new SortedView(current.getVersion(), Collections.unmodifiableList(current.resolve(sorted)));
+            sortedViews.set(key.ordinal(), view);
+        }
+        return view.minerals;
+    }
 
-            // Убираем все нечисловые символы, кроме точек, дефисов и пробелов
-            clean = clean.replaceAll("[^0-9.\\-\\s]", "");
+    /**
+     * Названия сравниваются прямо в столбце, без сборки строк. Сортируются номера строк
+     * в примитивном массиве; сортировка устойчива, равные названия остаются в порядке добавления
+     */
+    private static int[] sortByName(CatalogSnapshot current) {
+        MineralColumns columns = current.columns();
+        int[] rows = current.rows().toArray();
+        sortRows(rows, (row, other) -> columns.compare(MineralColumns.Column.NAME, row, other));
+        int[] ids = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            ids[i] = columns.id(rows[i]);
+        }
+        return ids;
+    }
 
-            // Если есть диапазон через дефис
-            if (clean.contains("-")) {
-                String[] parts = clean.split("-");
-                if (parts.length == 2) {
-                    double part1 = parseDoubleSafe(parts[0].trim());
-                    double part2 = parseDoubleSafe(parts[1].trim());
-                    return Math.min(part1, part2); // Используем минимальное значение
+    // Устойчивая сортировка слиянием: вставками по блокам из SORT_RUN элементов, затем слияния снизу вверх
+    private static void sortRows(int[] rows, IntBinaryOperator comparator) {
+        int count = rows.length;
+        for (int from = 0; from < count; from += SORT_RUN) {
+            int to = Math.min(from + SORT_RUN, count);
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && comparator.applyAsInt(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
                 }
+                rows[j + 1] = row;
             }
-
-            // Если есть пробел, берем первое число
-            if (clean.contains(" ")) {
-                String[] parts = clean.split(" ");
-                if (parts.length > 0) {
-                    return parseDoubleSafe(parts[0].trim());
+        }
+        int[] source = rows;
+        int[] target = new int[count];
+        for (int width = SORT_RUN; width < count; width *= 2) {
+            for (int from = 0; from < count; from += 2 * width) {
+                int middle = Math.min(from + width, count);
+                int to = Math.min(from + 2 * width, count);
+                int left = from;
+                int right = middle;
+                int out = from;
+                // Уже упорядоченные соседние блоки переносятся без сравнений
+                if (middle < to && comparator.applyAsInt(source[middle - 1], source[middle]) <= 0) {
+                    System.arraycopy(source, from, target, from, to - from);
+                    continue;
+                }
+                while (left < middle && right < to) {
+                    target[out++] = comparator.applyAsInt(source[left], source[right]) <= 0
+                            ? source[left++] : source[right++];
                 }
+                System.arraycopy(source, left, target, out, middle - left);
+                System.arraycopy(source, right, target, out + middle - left, to - right);
             }
-
-            return parseDoubleSafe(clean);
-        } catch (Exception e) {
-            return 0.0;
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != rows) {
+            System.arraycopy(source, 0, rows, 0, count);
         }
     }
 
-    private double parseDoubleSafe(String str) {
-        try {
-            return Double.parseDouble(str);
-        } catch (NumberFormatException e) {
-            return 0.0;
+    /**
+     * Границы твердости уже разобраны в словаре столбца, поэтому сортируется примитивный
+     * массив long: в старших 32 битах - твердость как float с сохранением порядка,
+     * в младших - позиция, что заодно делает сортировку устойчивой
+     */
+    private static int[] sortByHardness(CatalogSnapshot current) {
+        MineralColumns columns = current.columns();
+        int[] rows = current.rows().toArray();
+        int count = rows.length;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            double hardness = columns.min(MineralColumns.Column.HARDNESS, rows[i]);
+            keys[i] = ((long) sortableBits(Double.isNaN(hardness) ? 0f : (float) hardness) << 32) | i;
         }
+        if (count >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = columns.id(rows[(int) keys[i]]);
+        }
+        return ids;
+    }
+
+    // Биты float, которые сравниваются как int в том же порядке, что и сами числа
+    private static int sortableBits(float value) {
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
     }
 
     // Методы для получения минералов
     public List<Mineral> getAllMinerals() {
-        return new ArrayList<>(minerals);
+        return snapshot.toList();
     }
 
     public int getCollectionSize() {
-        return minerals.size();
+        return snapshot.size();
     }
 
     public boolean isEmpty() {
-        return minerals.isEmpty();
+        return snapshot.isEmpty();
     }
 
     // Статистика
+    /**
+     * Статистика текущей версии: всё ведётся индексами при изменениях, прохода по коллекции нет
+     */
+    public CatalogStatistics getStatistics() {
+        return CatalogStatistics.of(snapshot);
+    }
+
     public void displayCollectionStats() {
+        CatalogStatistics stats = getStatistics();
         System.out.println("\n=== СТАТИСТИКА КОЛЛЕКЦИИ ===");
-        System.out.println("Всего минералов: " + minerals.size());
+        System.out.println("Всего минералов: " + stats.getTotal());
 
-        if (!minerals.isEmpty()) {
-            // Статистика по классам
-            Map<String, Long> classStats = minerals.stream()
-                    .collect(Collectors.groupingBy(Mineral::getMineralClass, Collectors.counting()));
+        if (stats.getTotal() > 0) {
             System.out.println("\nРаспределение по классам:");
-            classStats.entrySet().stream()
-                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                    .forEach(entry -> System.out.println("  " + entry.getKey() + ": " + entry.getValue()));
+            stats.getClassCounts().forEach((mineralClass, count) ->
+                    System.out.println("  " + mineralClass + ": " + count));
 
-            // Статистика по месторождениям
-            Map<String, Long> locationStats = minerals.stream()
-                    .collect(Collectors.groupingBy(Mineral::getLocation, Collectors.counting()));
             System.out.println("\nТоп-5 месторождений:");
-            locationStats.entrySet().stream()
-                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-                    .limit(5)
-                    .forEach(entry -> System.out.println("  " + entry.getKey() + ": " + entry.getValue()));
+            HeavyHitters locations = stats.getTopLocations();
+            locations.top(5).forEach(entry ->
+                    System.out.println("  " + entry.getValue() + ": " + entry.getEstimate()));
+            if (locations.errorBound() > 0) {
+                System.out.printf(Locale.ROOT, "  (оценка: завышение не больше %d с вероятностью %.1f%%)%n",
+                        locations.errorBound(), locations.confidence() * 100);
+            }
 
-            // Статистика по твердости
+            NumericStatistics.Summary hardness = stats.getHardness();
             System.out.println("\nДиапазон твердости:");
-            double minHardness = minerals.stream()
-                    .mapToDouble(mineral -> {
-                        try {
-                            String hard = mineral.getHardness().split("-")[0].replace(",", ".");
-                            return Double.parseDouble(hard);
-                        } catch (Exception e) {
-                            return 0.0;
-                        }
-                    })
-                    .min()
-                    .orElse(0.0);
-            double maxHardness = minerals.stream()
-                    .mapToDouble(mineral -> {
-                        try {
-                            String hard = mineral.getHardness().split("-")[0].replace(",", ".");
-                            return Double.parseDouble(hard);
-                        } catch (Exception e) {
-                            return 0.0;
-                        }
-                    })
-                    .max()
-                    .orElse(0.0);
-            System.out.println("  От " + minHardness + " до " + maxHardness + " по шкале Мооса");
-        }
-    }
-
-    // Поиск по всем полям
+            if (hardness.getCount() > 0) {
+                System.out.println("  От " + hardness.getMin() + " до " + hardness.getMax() + " по шкале Мооса");
+                System.out.printf(Locale.ROOT, "  Среднее %.2f, стандартное отклонение %.2f (%d минералов)%n",
+                        hardness.getMean(), hardness.getStandardDeviation(), hardness.getCount());
+            } else {
+                System.out.println("  От 0.0 до 0.0 по шкале Мооса");
+            }
+
+            NumericStatistics.Summary gravity = stats.getSpecificGravity();
+            if (gravity.getCount() > 0) {
+                System.out.println("\nУдельный вес:");
+                System.out.printf(Locale.ROOT, "  От %.2f до %.2f, среднее %.2f, стандартное отклонение %.2f (%d минералов)%n",
+                        gravity.getMin(), gravity.getMax(), gravity.getMean(),
+                        gravity.getStandardDeviation(), gravity.getCount());
+            }
+        }
+    }
+
+    /**
+     * Поиск по всем полям: подстрока или все слова запроса с учётом окончаний,
+     * транслитерации и синонимов ("кварцы", "kvarts", "черный кварц").
+     * Результат в порядке добавления
+     */
     public List<Mineral> searchInAllFields(String searchTerm) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
             return new ArrayList<>();
         }
 
-        String term = searchTerm.toLowerCase();
-        return minerals.stream()
-                .filter(mineral ->
-                        mineral.getName().toLowerCase().contains(term) ||
-                                mineral.getFormula().toLowerCase().contains(term) ||
-                                mineral.getMineralClass().toLowerCase().contains(term) ||
-                                mineral.getColor().toLowerCase().contains(term) ||
-                                mineral.getLocation().toLowerCase().contains(term) ||
-                                mineral.getApplication().toLowerCase().contains(term) ||
-                                mineral.getInterestingFacts().toLowerCase().contains(term))
-                .collect(Collectors.toList());
+        String term = TextFolding.fold(searchTerm);
+        CatalogSnapshot current = snapshot;
+        MineralColumns columns = current.columns();
+        IntPredicate substring = columns.containingAny(term, CatalogIndexes.SEARCHABLE_COLUMNS);
+        IdBitmap byTerms = current.indexes().getTokens().matchingAll(searchTerm);
+        if (byTerms == null || byTerms.isEmpty()) {
+            int[] candidates = current.indexes().getTextGrams().candidates(term);
+            return candidates == null ? current.select(substring) : current.resolve(candidates, substring);
+        }
+        IntPredicate matches = row -> substring.test(row) || byTerms.contains(columns.id(row));
+        int[] candidates = current.indexes().getTextGrams().candidates(term);
+        if (candidates == null) {
+            return current.select(matches);
+        }
+        // Кандидаты по подстроке и найденные по словам вместе, ID по возрастанию
+        IdBitmap union = byTerms.copy();
+        for (int id : candidates) {
+            union.add(id);
+        }
+        return current.resolve(union.toArray(), matches);
+    }
+
+    /**
+     * Подсказки при наборе: до limit самых частых названий и месторождений,
+     * одно из слов которых начинается с prefix
+     */
+    public List<SuggestIndex.Suggestion> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        return snapshot.indexes().getSuggestions().suggest(prefix, limit);
+    }
+
+    /**
+     * Поиск по всем полям с ранжированием по BM25: выше те минералы, где слова запроса
+     * встречаются чаще и в более коротком тексте, а редкие слова весят больше частых.
+     * Возвращает не больше limit лучших, от лучшего к худшему
+     */
+    public List<SearchHit> searchRanked(String query, int limit) {
+        List<SearchHit> result = new ArrayList<>();
+        if (query == null || query.trim().isEmpty()) {
+            return result;
+        }
+        CatalogSnapshot current = snapshot;
+        Bm25Index.TopHits top = current.indexes().getRanking().search(query, limit);
+        int[] ids = top.getIds();
+        double[] scores = top.getScores();
+        for (int i = 0; i < ids.length; i++) {
+            Mineral mineral = current.get(ids[i]);
+            if (mineral != null) {
+                result.add(new SearchHit(mineral, scores[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Поиск только по словам: минералы, в полях которых есть все слова запроса
+     * (после разбора {@link TextAnalyzer}), в порядке добавления
+     */
+    public List<Mineral> searchByTerms(String query) {
+        CatalogSnapshot current = snapshot;
+        IdBitmap matched = current.indexes().getTokens().matchingAll(query);
+        if (matched == null) {
+            return new ArrayList<>();
+        }
+        return current.resolve(matched.toArray());
     }
 
-    // Получить все уникальные классы минералов
+    /**
+     * До k минералов, похожих на минерал с данным ID, от самого похожего: ближайшие по
+     * твердости, плотности, классу, блеску, цвету и составу формулы (см. {@link VectorIndex}).
+     * Оценка сходства - 1 / (1 + расстояние), от 0 до 1. Пустой список, если ID нет
+     */
+    public List<SearchHit> findSimilar(int id, int k) {
+        List<SearchHit> result = new ArrayList<>();
+        CatalogSnapshot current = snapshot;
+        VectorIndex.Neighbours neighbours = current.indexes().getVectors().nearest(id, k);
+        int[] ids = neighbours.getIds();
+        double[] distances = neighbours.getDistances();
+        for (int i = 0; i < ids.length; i++) {
+            Mineral mineral = current.get(ids[i]);
+            if (mineral != null) {
+                result.add(new SearchHit(mineral, 1 / (1 + distances[i])));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Поиск по составу: минералы, в формуле которых есть все элементы included и нет
+     * ни одного из excluded, в порядке добавления. Символы без учёта регистра ("cu" = "Cu")
+     *
+     * @throws IllegalArgumentException если символ не является химическим элементом
+     */
+    public List<Mineral> findByElements(Collection<String> included, Collection<String> excluded) {
+        List<String> includedSymbols = toElementSymbols(included);
+        List<String> excludedSymbols = toElementSymbols(excluded);
+        CatalogSnapshot current = snapshot;
+        return current.resolve(current.indexes().getElements().matching(includedSymbols, excludedSymbols).toArray());
+    }
+
+    /**
+     * Элементы, встречающиеся в формулах, с числом минералов (только для чтения)
+     */
+    public Map<String, Integer> getElementCounts() {
+        return snapshot.indexes().getElements().counts();
+    }
+
+    private static List<String> toElementSymbols(Collection<String> elements) {
+        List<String> symbols = new ArrayList<>();
+        for (String element : elements) {
+            String symbol = ChemicalFormula.symbolOf(element);
+            if (symbol == null) {
+                throw new IllegalArgumentException("Неизвестный химический элемент: " + element);
+            }
+            symbols.add(symbol);
+        }
+        return symbols;
+    }
+
+    /**
+     * Минералы, удовлетворяющие всем условиям запроса (см. {@link MineralQuery}),
+     * в порядке добавления. Пустой запрос возвращает всю коллекцию
+     */
+    public List<Mineral> query(MineralQuery query) {
+        return QueryPlanner.execute(snapshot, query);
+    }
+
+    /**
+     * То же для строки запроса, например {@code class:Силикаты hardness:>5}
+     *
+     * @throws IllegalArgumentException если строку не удалось разобрать
+     */
+    public List<Mineral> query(String queryText) {
+        return query(MineralQuery.parse(queryText));
+    }
+
+    /**
+     * Описание плана выполнения запроса для текущей версии коллекции
+     */
+    public String explainQuery(MineralQuery query) {
+        return QueryPlanner.plan(snapshot, query).toString();
+    }
+
+    // Получить все уникальные классы минералов (только для чтения)
     public Set<String> getAllMineralClasses() {
-        return minerals.stream()
-                .map(Mineral::getMineralClass)
-                .collect(Collectors.toSet());
+        return getFacetHistogram(FacetIndex.Facet.MINERAL_CLASS).keySet();
     }
 
-    // Получить все уникальные месторождения
+    // Получить все уникальные месторождения (только для чтения)
     public Set<String> getAllLocations() {
-        return minerals.stream()
-                .map(Mineral::getLocation)
-                .collect(Collectors.toSet());
+        return getFacetHistogram(FacetIndex.Facet.LOCATION).keySet();
+    }
+
+    /**
+     * Гистограмма значений фасета для текущей версии (только для чтения)
+     */
+    public Map<String, Integer> getFacetHistogram(FacetIndex.Facet facet) {
+        return snapshot.indexes().getFacets().histogram(facet);
+    }
+
+    /**
+     * Число различных непустых значений фасета
+     */
+    public int getDistinctCount(FacetIndex.Facet facet) {
+        return snapshot.indexes().getFacets().distinctNonBlankCount(facet);
+    }
+
+    public int getUniqueLocationsCount() {
+        return getDistinctCount(FacetIndex.Facet.LOCATION);
+    }
+
+    public int getUniqueColorsCount() {
+        return getDistinctCount(FacetIndex.Facet.COLOR);
     }
 
     // Очистить коллекцию
     public void clearCollection() {
-        minerals.clear();
-        nextId = 1;
+        synchronized (writeLock) {
+            CatalogSnapshot.Builder builder = snapshot.edit();
+            builder.clear();
+            snapshot = builder.build();
+            nextId.set(1);
+            changeLog.cleared(snapshot.getVersion());
+        }
     }
     
     // Новые методы для статистики по категориям ценности
     public Map<String, Integer> getValueCategoryStats() {
         Map<String, Integer> stats = new HashMap<>();
-        for (Mineral mineral : minerals) {
-            String category = mineral.getValueCategory();
-            if (category == null || category.trim().isEmpty()) {
-                category = "Не указана";
-            }
-            stats.put(category, stats.getOrDefault(category, 0) + 1);
-        }
+        getFacetHistogram(FacetIndex.Facet.VALUE_CATEGORY).forEach((category, count) ->
+                stats.merge(category.isEmpty() ? "Не указана" : category, count, Integer::sum));
         return stats;
     }
     
     public List<String> getAllValueCategories() {
-        return minerals.stream()
-                .map(Mineral::getValueCategory)
-                .filter(cat -> cat != null && !cat.trim().isEmpty())
-                .distinct()
+        return getFacetHistogram(FacetIndex.Facet.VALUE_CATEGORY).keySet().stream()
+                .filter(cat -> !cat.isEmpty())
                 .sorted()
                 .collect(Collectors.toList());
     }
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * Триграммный индекс для поиска подстрок.
+ * Для каждой триграммы хранится отсортированный список ID минералов, в тексте которых
+ * она встречается. Запрос "содержит" сводится к пересечению списков триграмм запроса,
+ * после чего кандидаты проверяются настоящим сравнением строк.
+ *
+ * Индекс входит в неизменяемый снимок каталога: {@link #copy()} разделяет списки
+ * с исходным индексом, а изменяемый список копируется при первой записи в него.
+ */
+public class NGramIndex {
+    static final int GRAM_LENGTH = 3;
+
+    // Триграмма → номер списка в postings
+    private final IntIntHashMap postingByGram;
+    private int[][] postings;
+    private int[] lengths;
+    // Списки, скопированные этой версией индекса; остальные общие с предыдущей
+    private boolean[] owned;
+    private int postingCount;
+
+    public NGramIndex() {
+        postingByGram = new IntIntHashMap();
+        postings = new int[64][];
+        lengths = new int[64];
+        owned = new boolean[64];
+    }
+
+    private NGramIndex(NGramIndex other) {
+        postingByGram = new IntIntHashMap(other.postingByGram);
+        postings = other.postings.clone();
+        lengths = other.lengths.clone();
+        owned = new boolean[postings.length];
+        postingCount = other.postingCount;
+    }
+
+    /**
+     * Копия для следующей версии снимка: списки общие до первого изменения
+     */
+    public NGramIndex copy() {
+        return new NGramIndex(this);
+    }
+
+    /**
+     * Проиндексировать тексты минерала. Тексты должны быть уже свёрнуты (см. TextFolding)
+     */
+    public void add(int id, String... texts) {
+        for (String text : texts) {
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                insert(gramAt(text, i), id);
+            }
+        }
+    }
+
+    /**
+     * Убрать минерал из индекса; тексты те же, что были переданы в {@link #add}
+     */
+    public void remove(int id, String... texts) {
+        for (String text : texts) {
+            for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+                delete(gramAt(text, i), id);
+            }
+        }
+    }
+
+    /**
+     * ID минералов, тексты которых могут содержать свёрнутый term (по возрастанию).
+     * Возвращает null, если term короче триграммы и индекс не может помочь
+     */
+    public int[] candidates(String term) {
+        if (term.length() < GRAM_LENGTH) {
+            return null;
+        }
+        int gramCount = term.length() - GRAM_LENGTH + 1;
+        int[] lists = new int[gramCount];
+        for (int i = 0; i < gramCount; i++) {
+            int posting = postingByGram.get(gramAt(term, i), -1);
+            if (posting < 0) {
+                return new int[0];
+            }
+            lists[i] = posting;
+        }
+        // Начинаем с самого короткого списка, остальные пересекаем бинарным поиском
+        int shortest = 0;
+        for (int i = 1; i < gramCount; i++) {
+            if (lengths[lists[i]] < lengths[lists[shortest]]) {
+                shortest = i;
+            }
+        }
+        int[] result = Arrays.copyOf(postings[lists[shortest]], lengths[lists[shortest]]);
+        int resultLength = result.length;
+        for (int i = 0; i < gramCount && resultLength > 0; i++) {
+            if (i == shortest) continue;
+            int[] other = postings[lists[i]];
+            int otherLength = lengths[lists[i]];
+            int kept = 0;
+            for (int j = 0; j < resultLength; j++) {
+                if (Arrays.binarySearch(other, 0, otherLength, result[j]) >= 0) {
+                    result[kept++] = result[j];
+                }
+            }
+            resultLength = kept;
+        }
+        return resultLength == result.length ? result : Arrays.copyOf(result, resultLength);
+    }
+
+    private void insert(int gram, int id) {
+        int posting = postingByGram.get(gram, -1);
+        if (posting < 0) {
+            posting = newPosting();
+            postingByGram.put(gram, posting);
+        }
+        int length = lengths[posting];
+        int[] ids = postings[posting];
+        // ID растут в порядке добавления, так что обычно это дописывание в конец
+        if (length > 0 && ids[length - 1] == id) {
+            return;
+        }
+        int position = length > 0 && ids[length - 1] > id
+                ? Arrays.binarySearch(ids, 0, length, id)
+                : -(length + 1);
+        if (position >= 0) {
+            return;
+        }
+        position = -(position + 1);
+        ids = own(posting, length + 1);
+        System.arraycopy(ids, position, ids, position + 1, length - position);
+        ids[position] = id;
+        lengths[posting] = length + 1;
+    }
+
+    private void delete(int gram, int id) {
+        int posting = postingByGram.get(gram, -1);
+        if (posting < 0) {
+            return;
+        }
+        int length = lengths[posting];
+        int position = Arrays.binarySearch(postings[posting], 0, length, id);
+        if (position < 0) {
+            return;
+        }
+        int[] ids = own(posting, length);
+        System.arraycopy(ids, position + 1, ids, position, length - position - 1);
+        lengths[posting] = length - 1;
+        // Пустой список оставляем: триграмма, скорее всего, ещё встретится
+    }
+
+    // Гарантирует, что список принадлежит этой версии и вмещает capacity элементов
+    private int[] own(int posting, int capacity) {
+        int[] ids = postings[posting];
+        if (!owned[posting] || ids.length < capacity) {
+            int newCapacity = ids.length < capacity ? Math.max(4, ids.length * 2) : ids.length;
+            ids = Arrays.copyOf(ids, newCapacity);
+            postings[posting] = ids;
+            owned[posting] = true;
+        }
+        return ids;
+    }
+
+    private int newPosting() {
+        if (postingCount == postings.length) {
+            int capacity = postings.length * 2;
+            postings = Arrays.copyOf(postings, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            owned = Arrays.copyOf(owned, capacity);
+        }
+        postings[postingCount] = new int[4];
+        owned[postingCount] = true;
+        return postingCount++;
+    }
+
+    // Три символа упаковываются в 48 бит и сворачиваются в int; редкие коллизии
+    // дают лишних кандидатов, которых отсеивает проверка строк
+    private static int gramAt(String text, int offset) {
+        long packed = ((long) text.charAt(offset) << 32)
+                | ((long) text.charAt(offset + 1) << 16)
+                | text.charAt(offset + 2);
+        return (int) ((packed * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Числовой диапазон, извлечённый из текстового значения свойства,
+ * например твердости "6,5-7" или "4.5-5 паралл., 6.5-7 перпенд.".
+ * Берутся все числа из строки: min - наименьшее, max - наибольшее.
+ * Десятичным разделителем может быть точка или запятая перед цифрой.
+ */
+public final class NumericRange {
+    public static final NumericRange UNKNOWN = new NumericRange(Double.NaN, Double.NaN);
+
+    private static final double[] POWERS_OF_TEN = {1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private final double min;
+    private final double max;
+
+    private NumericRange(double min, double max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Нижняя граница или NaN, если в тексте нет чисел
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Верхняя граница или NaN, если в тексте нет чисел
+     */
+    public double getMax() {
+        return max;
+    }
+
+    public boolean isKnown() {
+        return !Double.isNaN(min);
+    }
+
+    public static NumericRange parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return UNKNOWN;
+        }
+        double min = Double.NaN;
+        double max = Double.NaN;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (!isDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            // Цифры копим в long и делим один раз, чтобы "2,58" давало ровно 2.58
+            long digits = 0;
+            int fractionDigits = 0;
+            while (i < length && isDigit(text.charAt(i))) {
+                digits = digits * 10 + (text.charAt(i) - '0');
+                i++;
+            }
+            if (i + 1 < length && (text.charAt(i) == ',' || text.charAt(i) == '.') && isDigit(text.charAt(i + 1))) {
+                i++;
+                while (i < length && isDigit(text.charAt(i))) {
+                    if (fractionDigits < 9) {
+                        digits = digits * 10 + (text.charAt(i) - '0');
+                        fractionDigits++;
+                    }
+                    i++;
+                }
+            }
+            double value = digits / POWERS_OF_TEN[fractionDigits];
+            if (Double.isNaN(min) || value < min) min = value;
+            if (Double.isNaN(max) || value > max) max = value;
+        }
+        return Double.isNaN(min) ? UNKNOWN : new NumericRange(min, max);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    @Override
+    public String toString() {
+        return isKnown() ? min + "-" + max : "?";
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Сводка по числовому свойству (твердость, плотность), обновляемая при каждом добавлении
+ * и удалении минерала: число минералов с указанным значением, минимум, максимум,
+ * среднее и дисперсия - без прохода по коллекции.
+ *
+ * Значение минерала - диапазон "3,5-4": минимум берётся по нижним границам, максимум по
+ * верхним, а среднее и дисперсия - по серединам диапазонов. Среднее и сумма квадратов
+ * отклонений ведутся по Уэлфорду, включая обратный шаг при удалении. Минимум и максимум
+ * хранятся готовыми, а рядом - счётчики границ ({@link PagedHashMap}), чтобы после удаления
+ * последнего крайнего значения найти следующее проходом по различным границам, а не по минералам.
+ */
+public class NumericStatistics {
+    // Нижняя и верхняя граница → сколько минералов с ней
+    private final PagedHashMap<Double, Integer> lows;
+    private final PagedHashMap<Double, Integer> highs;
+    private double lowest = Double.NaN;
+    private double highest = Double.NaN;
+    private int count;
+    private double mean;
+    // Сумма квадратов отклонений от среднего
+    private double squares;
+
+    public NumericStatistics() {
+        lows = new PagedHashMap<>();
+        highs = new PagedHashMap<>();
+    }
+
+    private NumericStatistics(NumericStatistics other) {
+        lows = other.lows.copy();
+        highs = other.highs.copy();
+        lowest = other.lowest;
+        highest = other.highest;
+        count = other.count;
+        mean = other.mean;
+        squares = other.squares;
+    }
+
+    /**
+     * Копия для следующей версии снимка. Счётчики границ - страничные: копия берёт массив ссылок
+     * на страницы (у плотности на 400 тыс. минералов около 1.8 тыс. различных нижних границ -
+     * около сотни страниц), а запись копирует одну страницу каждого счётчика
+     */
+    public NumericStatistics copy() {
+        return new NumericStatistics(this);
+    }
+
+    /**
+     * Учесть диапазон [low, high]; NaN в low - значение не указано и не учитывается
+     */
+    public void add(double low, double high) {
+        if (Double.isNaN(low)) {
+            return;
+        }
+        double top = Double.isNaN(high) ? low : high;
+        lows.merge(low, 1, Integer::sum);
+        highs.merge(top, 1, Integer::sum);
+        if (count == 0 || low < lowest) {
+            lowest = low;
+        }
+        if (count == 0 || top > highest) {
+            highest = top;
+        }
+        double value = (low + top) / 2;
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        squares += delta * (value - mean);
+    }
+
+    /**
+     * Убрать диапазон, ранее переданный в {@link #add}
+     */
+    public void remove(double low, double high) {
+        if (Double.isNaN(low) || !lows.containsKey(low)) {
+            return;
+        }
+        double top = Double.isNaN(high) ? low : high;
+        decrement(lows, low);
+        decrement(highs, top);
+        double value = (low + top) / 2;
+        count--;
+        if (count == 0) {
+            lowest = Double.NaN;
+            highest = Double.NaN;
+            mean = 0;
+            squares = 0;
+            return;
+        }
+        if (low == lowest && !lows.containsKey(low)) {
+            lowest = extreme(lows, true);
+        }
+        if (top == highest && !highs.containsKey(top)) {
+            highest = extreme(highs, false);
+        }
+        double delta = value - mean;
+        mean -= delta / count;
+        squares = Math.max(0, squares - delta * (value - mean));
+    }
+
+    private static void decrement(PagedHashMap<Double, Integer> counts, double value) {
+        Integer current = counts.get(value);
+        if (current == null) {
+            return;
+        }
+        if (current == 1) {
+            counts.remove(value);
+        } else {
+            counts.put(value, current - 1);
+        }
+    }
+
+    // Наименьшая или наибольшая из границ
+    private static double extreme(PagedHashMap<Double, Integer> counts, boolean smallest) {
+        double result = Double.NaN;
+        for (double value : counts.keySet()) {
+            if (Double.isNaN(result) || (smallest ? value < result : value > result)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Текущие значения одним неизменяемым объектом
+     */
+    public Summary summary() {
+        if (count == 0) {
+            return new Summary(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+        }
+        return new Summary(count, lowest, highest, mean, squares / count);
+    }
+
+    /**
+     * Сводка на момент вызова. Без значений (count = 0) все величины - NaN
+     */
+    public static final class Summary {
+        private final int count;
+        private final double min;
+        private final double max;
+        private final double mean;
+        private final double variance;
+
+        Summary(int count, double min, double max, double mean, double variance) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.variance = variance;
+        }
+
+        /**
+         * Число минералов, у которых значение указано
+         */
+        public int getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * Среднее по серединам диапазонов
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        /**
+         * Дисперсия по совокупности (деление на count)
+         */
+        public double getVariance() {
+            return variance;
+        }
+
+        public double getStandardDeviation() {
+            return Math.sqrt(variance);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Словарь для индексов снимка, разбитый на страницы-{@link HashMap}, как {@link PagedIntIntMap}.
+ * {@link #copy()} копирует массив ссылок на страницы, а страница копируется при первой записи
+ * в неё.
+ *
+ * В отличие от первичного индекса, один минерал меняет здесь десятки ключей (термины текста,
+ * месторождения, цвета), и они попадают на разные страницы. Поэтому страницы маленькие:
+ * запись минерала с t ключами стоит O(size / PAGE_SIZE + t * PAGE_SIZE) - копия массива
+ * ссылок и по странице на ключ, а не копия всего словаря.
+ *
+ * Чтение - обычный {@link Map}: обход идёт по страницам, порядок не определён.
+ * Изменять можно только через put и remove (и методы Map, которые к ним сводятся);
+ * представления entrySet, keySet и values - только для чтения.
+ */
+public class PagedHashMap<K, V> extends AbstractMap<K, V> {
+    // Средний размер страницы, к которому приводится число страниц: в странице от PAGE_SIZE до 2 * PAGE_SIZE ключей
+    static final int PAGE_SIZE = 16;
+
+    private HashMap<K, V>[] pages;
+    // Страницы, скопированные этой версией; остальные общие с предыдущей
+    private boolean[] owned;
+    private int shift;
+    private int size;
+    private Set<Map.Entry<K, V>> entries;
+
+    public PagedHashMap() {
+        pages = newPages(1);
+        pages[0] = new HashMap<>();
+        owned = new boolean[] {true};
+        shift = 32;
+    }
+
+    private PagedHashMap(PagedHashMap<K, V> other) {
+        pages = other.pages.clone();
+        owned = new boolean[pages.length];
+        shift = other.shift;
+        size = other.size;
+    }
+
+    /**
+     * Копия для следующей версии снимка: страницы общие до первого изменения
+     */
+    public PagedHashMap<K, V> copy() {
+        return new PagedHashMap<>(this);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return pages[pageOf(key)].containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+        return pages[pageOf(key)].get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        HashMap<K, V> page = own(pageOf(key));
+        int before = page.size();
+        V previous = page.put(key, value);
+        if (page.size() > before && ++size > pages.length * PAGE_SIZE * 2) {
+            split(pages.length * 2);
+        }
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int index = pageOf(key);
+        if (!pages[index].containsKey(key)) {
+            return null;
+        }
+        size--;
+        return own(index).remove(key);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<K, V>>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entries;
+    }
+
+    private HashMap<K, V> own(int index) {
+        if (!owned[index]) {
+            pages[index] = new HashMap<>(pages[index]);
+            owned[index] = true;
+        }
+        return pages[index];
+    }
+
+    // Перераскладывает ключи по count страницам; все страницы становятся своими
+    private void split(int count) {
+        HashMap<K, V>[] old = pages;
+        pages = newPages(count);
+        owned = new boolean[count];
+        shift = 32 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            pages[i] = new HashMap<>();
+            owned[i] = true;
+        }
+        for (HashMap<K, V> page : old) {
+            for (Map.Entry<K, V> entry : page.entrySet()) {
+                pages[pageOf(entry.getKey())].put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    // Старшие биты перемешанного хеша: внутри HashMap ячейка выбирается по младшим
+    private int pageOf(Object key) {
+        if (shift == 32) {
+            return 0;
+        }
+        int h = (key == null ? 0 : key.hashCode()) * 0x9E3779B9;
+        return h >>> shift;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> HashMap<K, V>[] newPages(int count) {
+        return (HashMap<K, V>[]) new HashMap<?, ?>[count];
+    }
+
+    // Обход страниц по очереди; удаление через итератор не поддерживается
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final HashMap<K, V>[] snapshot = pages;
+        private int page;
+        private Iterator<Map.Entry<K, V>> current = snapshot[0].entrySet().iterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (++page >= snapshot.length) {
+                    return false;
+                }
+                current = snapshot[page].entrySet().iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            // Запись страницы может быть общей с другими версиями, поэтому наружу - неизменяемая копия
+            return new AbstractMap.SimpleImmutableEntry<>(current.next());
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Отображение int → int для первичного индекса снимка, разбитое на страницы-{@link IntIntHashMap}.
+ * Страница ключа выбирается по старшим битам хеша. {@link #copy()} копирует только массив ссылок
+ * на страницы (около size / 1024 элементов), а сама страница копируется при первой записи в неё.
+ * Поэтому запись в новую версию стоит O(size / PAGE_SIZE + PAGE_SIZE), а не O(size).
+ *
+ * Когда страницы в среднем становятся вдвое больше PAGE_SIZE, их число удваивается.
+ * Это перестраивает всю таблицу, но случается только при удвоении размера.
+ */
+public class PagedIntIntMap {
+    // Средний размер страницы, к которому приводится число страниц
+    static final int PAGE_SIZE = 1024;
+
+    private IntIntHashMap[] pages;
+    // Страницы, скопированные этой версией; остальные общие с предыдущей
+    private boolean[] owned;
+    private int shift;
+    private int size;
+
+    public PagedIntIntMap() {
+        this(0);
+    }
+
+    public PagedIntIntMap(int expectedSize) {
+        int count = pageCountFor(expectedSize);
+        pages = new IntIntHashMap[count];
+        owned = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            pages[i] = new IntIntHashMap(expectedSize / count);
+            owned[i] = true;
+        }
+        shift = shiftFor(count);
+    }
+
+    private PagedIntIntMap(PagedIntIntMap other) {
+        pages = other.pages.clone();
+        owned = new boolean[pages.length];
+        shift = other.shift;
+        size = other.size;
+    }
+
+    /**
+     * Копия для следующей версии снимка: страницы общие до первого изменения
+     */
+    public PagedIntIntMap copy() {
+        return new PagedIntIntMap(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return pages[pageOf(key)].containsKey(key);
+    }
+
+    /**
+     * Получить значение по ключу или defaultValue, если ключа нет
+     */
+    public int get(int key, int defaultValue) {
+        return pages[pageOf(key)].get(key, defaultValue);
+    }
+
+    public void put(int key, int value) {
+        IntIntHashMap page = own(pageOf(key));
+        int before = page.size();
+        page.put(key, value);
+        if (page.size() > before && ++size > pages.length * PAGE_SIZE * 2) {
+            split(pages.length * 2);
+        }
+    }
+
+    /**
+     * Удалить ключ. Возвращает true, если ключ был в таблице
+     */
+    public boolean remove(int key) {
+        int index = pageOf(key);
+        if (!pages[index].containsKey(key)) {
+            return false;
+        }
+        own(index).remove(key);
+        size--;
+        return true;
+    }
+
+    /**
+     * Заранее разбить таблицу под expectedSize ключей, чтобы пакетная вставка не перестраивала её по дороге
+     */
+    public void ensureCapacity(int expectedSize) {
+        int count = pageCountFor(expectedSize);
+        if (count > pages.length) {
+            split(count);
+        }
+    }
+
+    private IntIntHashMap own(int index) {
+        if (!owned[index]) {
+            pages[index] = new IntIntHashMap(pages[index]);
+            owned[index] = true;
+        }
+        return pages[index];
+    }
+
+    // Перераскладывает ключи по count страницам; все страницы становятся своими
+    private void split(int count) {
+        IntIntHashMap[] old = pages;
+        pages = new IntIntHashMap[count];
+        owned = new boolean[count];
+        shift = shiftFor(count);
+        int perPage = Math.max(PAGE_SIZE, size / count);
+        for (int i = 0; i < count; i++) {
+            pages[i] = new IntIntHashMap(perPage);
+            owned[i] = true;
+        }
+        for (IntIntHashMap page : old) {
+            page.forEach((key, value) -> pages[pageOf(key)].put(key, value));
+        }
+    }
+
+    // Старшие биты другого перемешивания, чем внутри IntIntHashMap: там позиция берётся по младшим
+    private int pageOf(int key) {
+        if (shift == 32) {
+            return 0;
+        }
+        int h = key * 0x85EBCA6B;
+        h ^= h >>> 15;
+        return h >>> shift;
+    }
+
+    private static int pageCountFor(int expectedSize) {
+        int count = 1;
+        while (count * PAGE_SIZE < expectedSize) {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    private static int shiftFor(int count) {
+        return 32 - Integer.numberOfTrailingZeros(count);
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Параллельный полный проход по большому каталогу. Диапазон [0, count) делится на отрезки
+ * по {@link #SEGMENT_SIZE}, отрезки проверяются в отдельном ForkJoinPool, а найденное
+ * склеивается в порядке отрезков - результат тот же, что у последовательного прохода.
+ *
+ * Меньше {@link #getThreshold()} элементов (или при одном потоке) проход идёт в вызывающем
+ * потоке: на маленьком каталоге раздача задач дороже самой проверки.
+ * Пул свой, а не общий ForkJoinPool.commonPool(), и число потоков в нём ограничено, чтобы
+ * тяжёлый запрос не занял все ядра, нужные потокам HTTP-сервера.
+ */
+public final class ParallelScan {
+    // Строк в одном отрезке: достаточно, чтобы задача окупала раздачу
+    static final int SEGMENT_SIZE = 4096;
+    static final int DEFAULT_THRESHOLD = 50_000;
+
+    private static volatile ParallelScan shared;
+
+    /**
+     * Проверка отрезка [from, to): найденное дописывается в out по порядку
+     */
+    @FunctionalInterface
+    public interface RangeCollector<T> {
+        void collect(int from, int to, List<T> out);
+    }
+
+    private final int parallelism;
+    private final int threshold;
+    // Создаётся при первом параллельном проходе
+    private volatile ForkJoinPool pool;
+
+    public ParallelScan(int parallelism, int threshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Число потоков должно быть положительным: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.threshold = Math.max(threshold, SEGMENT_SIZE);
+    }
+
+    /**
+     * Однопоточный вариант: все проходы в вызывающем потоке
+     */
+    public static ParallelScan sequential() {
+        return new ParallelScan(1, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Настройки по умолчанию: SCAN_THREADS потоков (по умолчанию половина ядер)
+     * и порог SCAN_THRESHOLD строк из переменных окружения
+     */
+    public static ParallelScan shared() {
+        ParallelScan scan = shared;
+        if (scan == null) {
+            synchronized (ParallelScan.class) {
+                scan = shared;
+                if (scan == null) {
+                    int threads = intFromEnv("SCAN_THREADS", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                    int threshold = intFromEnv("SCAN_THRESHOLD", DEFAULT_THRESHOLD);
+                    scan = new ParallelScan(Math.max(1, threads), threshold);
+                    shared = scan;
+                }
+            }
+        }
+        return scan;
+    }
+
+    private static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Неверное значение " + name + ": " + value + ", используется " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Пройти [0, count) и собрать найденное в порядке возрастания индексов
+     */
+    public <T> List<T> collect(int count, RangeCollector<T> collector) {
+        if (parallelism == 1 || count < threshold) {
+            List<T> result = new ArrayList<>();
+            collector.collect(0, count, result);
+            return result;
+        }
+        int segments = (count + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+        List<List<T>> parts = new ArrayList<>(segments);
+        for (int i = 0; i < segments; i++) {
+            parts.add(null);
+        }
+        pool().invoke(new SegmentTask<>(collector, count, parts, 0, segments));
+        int total = 0;
+        for (List<T> part : parts) {
+            total += part.size();
+        }
+        List<T> result = new ArrayList<>(total);
+        for (List<T> part : parts) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    private ForkJoinPool pool() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+                if (current == null) {
+                    current = new ForkJoinPool(parallelism, ParallelScan::newWorker, null, false);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("catalog-scan-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // Отрезки [firstSegment, endSegment); каждый пишет свой результат в parts
+    private static final class SegmentTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeCollector<T> collector;
+        private final int count;
+        private final List<List<T>> parts;
+        private final int firstSegment;
+        private final int endSegment;
+
+        SegmentTask(RangeCollector<T> collector, int count, List<List<T>> parts, int firstSegment, int endSegment) {
+            this.collector = collector;
+            this.count = count;
+            this.parts = parts;
+            this.firstSegment = firstSegment;
+            this.endSegment = endSegment;
+        }
+
+        @Override
+        protected void compute() {
+            if (endSegment - firstSegment == 1) {
+                int from = firstSegment * SEGMENT_SIZE;
+                List<T> part = new ArrayList<>();
+                collector.collect(from, Math.min(count, from + SEGMENT_SIZE), part);
+                parts.set(firstSegment, part);
+                return;
+            }
+            int middle = (firstSegment + endSegment) >>> 1;
+            invokeAll(new SegmentTask<>(collector, count, parts, firstSegment, middle),
+                    new SegmentTask<>(collector, count, parts, middle, endSegment));
+        }
+    }
+}
@@ -0,0 +1,400 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Эскизы квантилей ({@link KllSketch}) твердости и плотности по классам минералов.
+ * Класс определяется без учёта регистра и ё/е ({@link TextFolding}), как в фасетах:
+ * "Силикаты" и "силикаты" - один класс, названный так, как он впервые встретился.
+ * Значение минерала - середина диапазона ("3,5-4" → 3,75), как в {@link NumericStatistics}.
+ * Процентили и гистограмма класса читаются из готового эскиза за время, не зависящее
+ * от размера каталога, а по всему каталогу - слиянием эскизов классов.
+ *
+ * KLL не умеет удалять значения, поэтому удалённые значения класса копятся во втором
+ * эскизе - эскизе удалений, а ответы ({@link Distribution}) вычитают его ранги из рангов
+ * эскиза добавлений. Погрешность ранга при этом растёт в A / (A - R) раз, где A и R - число
+ * добавленных и удалённых значений. Поэтому, когда удалено больше 1/{@value #REBUILD_SHARE}
+ * добавленного, класс помечается устаревшим, и снимок перед публикацией пересобирает его
+ * эскизы по строкам этого класса ({@link #rebuildStale}), а не по всему каталогу.
+ *
+ * Копия для следующей версии, как в {@link ElementIndex}, разделяет эскизы с исходной;
+ * эскизы класса копируются при первом изменении.
+ */
+public class QuantileIndex {
+    // Класс пересобирается, когда удалено больше 1/REBUILD_SHARE добавленных минералов
+    static final int REBUILD_SHARE = 4;
+
+    public enum Property {
+        HARDNESS("hardness", MineralColumns.Column.HARDNESS),
+        SPECIFIC_GRAVITY("specificGravity", MineralColumns.Column.SPECIFIC_GRAVITY);
+
+        private final String key;
+        private final MineralColumns.Column column;
+
+        Property(String key, MineralColumns.Column column) {
+            this.key = key;
+            this.column = column;
+        }
+
+        /**
+         * Имя свойства в HTTP API
+         */
+        public String getKey() {
+            return key;
+        }
+
+        double valueOf(Mineral mineral) {
+            return this == HARDNESS
+                    ? midpoint(mineral.getHardnessMin(), mineral.getHardnessMax())
+                    : midpoint(mineral.getSpecificGravityMin(), mineral.getSpecificGravityMax());
+        }
+
+        double valueOf(MineralColumns columns, int row) {
+            return midpoint(columns.min(column, row), columns.max(column, row));
+        }
+
+        public static Property fromKey(String key) {
+            for (Property property : values()) {
+                if (property.key.equalsIgnoreCase(key)) {
+                    return property;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Эскизы одного класса: добавленные и удалённые значения по свойствам в порядке Property
+    private static final class ClassSketches {
+        // Класс, как он записан у первого учтённого минерала
+        final String name;
+        final KllSketch[] added;
+        final KllSketch[] removed;
+        // Число минералов, учтённых в added и в removed
+        int addedCount;
+        int removedCount;
+
+        ClassSketches(String name) {
+            this.name = name;
+            added = newSketches();
+            removed = newSketches();
+        }
+
+        ClassSketches(ClassSketches other) {
+            name = other.name;
+            added = copies(other.added);
+            removed = copies(other.removed);
+            addedCount = other.addedCount;
+            removedCount = other.removedCount;
+        }
+    }
+
+    // Свёрнутый класс (Mineral.getFoldedMineralClass) → его эскизы
+    private final Map<String, ClassSketches> sketches;
+    // Классы, эскизы которых скопированы этой версией индекса
+    private final Set<String> owned;
+    // Классы, в которых удалений накопилось достаточно для пересборки
+    private final Set<String> stale;
+
+    public QuantileIndex() {
+        sketches = new HashMap<>();
+        owned = new HashSet<>();
+        stale = new HashSet<>();
+    }
+
+    private QuantileIndex(QuantileIndex other) {
+        sketches = new HashMap<>(other.sketches);
+        owned = new HashSet<>();
+        stale = new HashSet<>(other.stale);
+    }
+
+    /**
+     * Копия для следующей версии снимка: эскизы классов общие до первого изменения
+     */
+    public QuantileIndex copy() {
+        return new QuantileIndex(this);
+    }
+
+    public void add(Mineral mineral) {
+        String mineralClass = mineral.getFoldedMineralClass();
+        if (stale.contains(mineralClass)) {
+            // Эскиз всё равно будет собран заново по строкам класса
+            return;
+        }
+        ClassSketches classSketches = own(mineralClass, mineral.getMineralClass());
+        for (Property property : Property.values()) {
+            classSketches.added[property.ordinal()].update(property.valueOf(mineral));
+        }
+        classSketches.addedCount++;
+    }
+
+    public void remove(Mineral mineral) {
+        String mineralClass = mineral.getFoldedMineralClass();
+        if (!sketches.containsKey(mineralClass) || stale.contains(mineralClass)) {
+            return;
+        }
+        ClassSketches classSketches = own(mineralClass, mineral.getMineralClass());
+        classSketches.removedCount++;
+        if (classSketches.removedCount == classSketches.addedCount) {
+            // Удалён последний минерал класса
+            sketches.remove(mineralClass);
+            owned.remove(mineralClass);
+            return;
+        }
+        for (Property property : Property.values()) {
+            classSketches.removed[property.ordinal()].update(property.valueOf(mineral));
+        }
+        if ((long) classSketches.removedCount * REBUILD_SHARE > classSketches.addedCount) {
+            stale.add(mineralClass);
+        }
+    }
+
+    /**
+     * Есть ли классы, эскизы которых нужно пересобрать
+     */
+    public boolean hasStale() {
+        return !stale.isEmpty();
+    }
+
+    /**
+     * Пересобрать эскизы устаревших классов. rowsOf получает свёрнутый класс и возвращает строки
+     * columns, среди которых есть все живые строки класса (лишние строки и строки других классов пропускаются)
+     */
+    public void rebuildStale(MineralColumns columns, Function<String, int[]> rowsOf) {
+        if (stale.isEmpty()) {
+            return;
+        }
+        for (String mineralClass : stale) {
+            // Строки по возрастанию, чтобы эскиз не зависел от порядка в rowsOf
+            int[] rows = rowsOf.apply(mineralClass).clone();
+            Arrays.sort(rows);
+            // Устаревший класс всегда есть в sketches: последнее удаление класса не помечает его
+            ClassSketches rebuilt = new ClassSketches(sketches.get(mineralClass).name);
+            for (int row : rows) {
+                if (!columns.isLive(row) || !mineralClass.equals(
+                        TextFolding.fold(columns.get(MineralColumns.Column.MINERAL_CLASS, row)))) {
+                    continue;
+                }
+                for (Property property : Property.values()) {
+                    rebuilt.added[property.ordinal()].update(property.valueOf(columns, row));
+                }
+                rebuilt.addedCount++;
+            }
+            if (rebuilt.addedCount == 0) {
+                sketches.remove(mineralClass);
+                owned.remove(mineralClass);
+            } else {
+                sketches.put(mineralClass, rebuilt);
+                owned.add(mineralClass);
+            }
+        }
+        stale.clear();
+    }
+
+    /**
+     * Названия классов, у которых есть эскизы
+     */
+    public List<String> classes() {
+        List<String> names = new ArrayList<>(sketches.size());
+        for (ClassSketches classSketches : sketches.values()) {
+            names.add(classSketches.name);
+        }
+        return names;
+    }
+
+    /**
+     * Название класса, под которым он известен индексу, или null, если такого класса нет.
+     * Регистр и ё/е не важны
+     */
+    public String className(String mineralClass) {
+        ClassSketches classSketches = sketches.get(TextFolding.fold(mineralClass));
+        return classSketches != null ? classSketches.name : null;
+    }
+
+    /**
+     * Распределение свойства в классе или null, если класса нет. Регистр и ё/е не важны
+     */
+    public Distribution sketch(String mineralClass, Property property) {
+        ClassSketches classSketches = sketches.get(TextFolding.fold(mineralClass));
+        return classSketches != null
+                ? new Distribution(classSketches.added[property.ordinal()], classSketches.removed[property.ordinal()])
+                : null;
+    }
+
+    /**
+     * Распределение свойства по всему каталогу - слияние эскизов всех классов
+     */
+    public Distribution merged(Property property) {
+        KllSketch added = new KllSketch();
+        KllSketch removed = new KllSketch();
+        for (ClassSketches classSketches : sketches.values()) {
+            added.merge(classSketches.added[property.ordinal()]);
+            removed.merge(classSketches.removed[property.ordinal()]);
+        }
+        return new Distribution(added, removed);
+    }
+
+    // Эскизы свёрнутого класса mineralClass, скопированные этой версией; name - название нового класса
+    private ClassSketches own(String mineralClass, String name) {
+        ClassSketches classSketches = sketches.get(mineralClass);
+        if (classSketches == null) {
+            classSketches = new ClassSketches(name);
+            sketches.put(mineralClass, classSketches);
+            owned.add(mineralClass);
+        } else if (owned.add(mineralClass)) {
+            classSketches = new ClassSketches(classSketches);
+            sketches.put(mineralClass, classSketches);
+        }
+        return classSketches;
+    }
+
+    private static KllSketch[] copies(KllSketch[] sketches) {
+        KllSketch[] result = new KllSketch[sketches.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sketches[i].copy();
+        }
+        return result;
+    }
+
+    private static KllSketch[] newSketches() {
+        KllSketch[] result = new KllSketch[Property.values().length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new KllSketch();
+        }
+        return result;
+    }
+
+    private static double midpoint(double low, double high) {
+        if (Double.isNaN(low)) {
+            return Double.NaN;
+        }
+        return Double.isNaN(high) ? low : (low + high) / 2;
+    }
+
+    /**
+     * Распределение значений свойства: эскиз добавлений за вычетом эскиза удалений.
+     * Доля значений не больше x - (A·rankA(x) - R·rankR(x)) / (A - R). Без удалений ответы
+     * те же, что у самого {@link KllSketch}. Объект только для чтения
+     */
+    public static final class Distribution {
+        private final KllSketch added;
+        private final KllSketch removed;
+        private final long count;
+
+        Distribution(KllSketch added, KllSketch removed) {
+            this.added = added;
+            this.removed = removed;
+            count = Math.max(0, added.getCount() - removed.getCount());
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public boolean isEmpty() {
+            return count == 0;
+        }
+
+        /**
+         * Минимум: точный, если удаления его не задели, иначе - оценка. NaN, если значений нет
+         */
+        public double getMin() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (removed.isEmpty() || removed.getMin() > added.getMin()) {
+                return added.getMin();
+            }
+            // Наименьшее значение эскиза, на котором остались неудалённые
+            for (double value : added.sortedValues()) {
+                if (rank(value) > 0) {
+                    return value;
+                }
+            }
+            return added.getMax();
+        }
+
+        /**
+         * Максимум: точный, если удаления его не задели, иначе - оценка. NaN, если значений нет
+         */
+        public double getMax() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (removed.isEmpty() || removed.getMax() < added.getMax()) {
+                return added.getMax();
+            }
+            // Наименьшее значение эскиза, до которого набираются все оставшиеся
+            for (double value : added.sortedValues()) {
+                if (rank(value) >= 1) {
+                    return value;
+                }
+            }
+            return added.getMax();
+        }
+
+        /**
+         * Значение на уровне rank (0..1), как {@link KllSketch#quantile}
+         */
+        public double quantile(double rank) {
+            if (removed.isEmpty()) {
+                return added.quantile(rank);
+            }
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (rank <= 0) {
+                return getMin();
+            }
+            if (rank >= 1) {
+                return getMax();
+            }
+            for (double value : added.sortedValues()) {
+                if (rank(value) >= rank) {
+                    return value;
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * Оценка доли значений, не превышающих value
+         */
+        public double rank(double value) {
+            if (removed.isEmpty()) {
+                return added.rank(value);
+            }
+            if (count == 0) {
+                return Double.NaN;
+            }
+            double remaining = added.getCount() * added.rank(value) - removed.getCount() * removed.rank(value);
+            return Math.min(1, Math.max(0, remaining / count));
+        }
+
+        /**
+         * Оценка числа значений в интервалах, как {@link KllSketch#histogram}
+         */
+        public long[] histogram(double[] splits) {
+            if (removed.isEmpty()) {
+                return added.histogram(splits);
+            }
+            long[] result = new long[splits.length + 1];
+            if (count == 0) {
+                return result;
+            }
+            // Оценки рангов могут немного убывать, поэтому накопленное число не даём уменьшать
+            long previous = 0;
+            for (int i = 0; i < splits.length; i++) {
+                long current = Math.max(previous, Math.round(rank(splits[i]) * count));
+                result[i] = current - previous;
+                previous = current;
+            }
+            result[splits.length] = count - previous;
+            return result;
+        }
+    }
+}
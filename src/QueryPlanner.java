@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Выполнение {@link MineralQuery} над снимком каталога.
+ *
+ * Условия по классу, категории ценности, блеску, спайности и генезису отвечаются
+ * точно битмап-индексами и сводятся к пересечению битмапов, условия по твердости
+ * и плотности - точно деревьями интервалов. Для остальных условий оценивается
+ * число подходящих минералов: по счётчикам фасетов для цвета и месторождения,
+ * по длине списка триграмм для названия и поиска по всем полям.
+ * Списки кандидатов из триграммных индексов пересекаются с точным результатом,
+ * начиная с самого избирательного условия, и оставшиеся кандидаты проверяются
+ * не покрытыми точными индексами условиями за один проход - тоже в порядке избирательности.
+ * Если ни одно условие не может использовать индекс, выполняется полный проход.
+ */
+final class QueryPlanner {
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * План запроса: ID кандидатов (null - полный проход) и условия, которыми их нужно проверить
+     */
+    static final class Plan {
+        private final List<MineralQuery.Criterion> exact;
+        private final List<MineralQuery.Criterion> indexed;
+        private final int[] candidates;
+        private final List<MineralQuery.Criterion> checks;
+        private final List<Integer> estimates;
+
+        private Plan(List<MineralQuery.Criterion> exact, List<MineralQuery.Criterion> indexed, int[] candidates,
+                     List<MineralQuery.Criterion> checks, List<Integer> estimates) {
+            this.exact = exact;
+            this.indexed = indexed;
+            this.candidates = candidates;
+            this.checks = checks;
+            this.estimates = estimates;
+        }
+
+        boolean isFullScan() {
+            return candidates == null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            if (candidates == null) {
+                sb.append("полный проход");
+            } else {
+                if (!exact.isEmpty()) {
+                    sb.append("точные индексы ").append(exact).append(", ");
+                }
+                if (!indexed.isEmpty()) {
+                    sb.append("триграммы ").append(indexed).append(", ");
+                }
+                sb.append(candidates.length).append(" кандидатов");
+            }
+            sb.append("; проверка:");
+            for (int i = 0; i < checks.size(); i++) {
+                sb.append(' ').append(checks.get(i)).append(" (~").append(estimates.get(i)).append(')');
+            }
+            return sb.toString();
+        }
+    }
+
+    static List<Mineral> execute(CatalogSnapshot snapshot, MineralQuery query) {
+        if (query.isEmpty()) {
+            return snapshot.toList();
+        }
+        Plan plan = plan(snapshot, query);
+        // Условия проверяются по столбцам; Mineral собирается только для найденных
+        IntPredicate matches = row -> true;
+        for (MineralQuery.Criterion check : plan.checks) {
+            matches = matches.and(check.rowMatcher(snapshot.columns()));
+        }
+        if (plan.candidates == null) {
+            return snapshot.select(matches);
+        }
+        return snapshot.resolve(plan.candidates, matches);
+    }
+
+    static Plan plan(CatalogSnapshot snapshot, MineralQuery query) {
+        CatalogIndexes indexes = snapshot.indexes();
+        List<MineralQuery.Criterion> criteria = query.getCriteria();
+        int count = criteria.size();
+        IdBitmap[] bitmaps = new IdBitmap[count];
+        int[][] ranges = new int[count][];
+        int[][] postings = new int[count][];
+        int[] estimates = new int[count];
+        for (int i = 0; i < count; i++) {
+            MineralQuery.Criterion criterion = criteria.get(i);
+            bitmaps[i] = bitmap(indexes.getBitmaps(), criterion);
+            ranges[i] = range(indexes, criterion);
+            if (bitmaps[i] != null) {
+                estimates[i] = bitmaps[i].cardinality();
+            } else if (ranges[i] != null) {
+                estimates[i] = ranges[i].length;
+            } else {
+                postings[i] = candidates(indexes, criterion);
+                estimates[i] = estimate(snapshot, criterion, postings[i]);
+            }
+        }
+
+        Integer[] byEstimate = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            byEstimate[i] = i;
+        }
+        Arrays.sort(byEstimate, Comparator.comparingInt(i -> estimates[i]));
+
+        // Точные условия: пересечение битмапов, затем списков из деревьев, от меньшего к большему
+        List<MineralQuery.Criterion> exact = new ArrayList<>();
+        IdBitmap matched = null;
+        for (int i : byEstimate) {
+            if (bitmaps[i] != null) {
+                matched = matched == null ? bitmaps[i] : matched.and(bitmaps[i]);
+                exact.add(criteria.get(i));
+            }
+        }
+        int[] result = matched != null ? matched.toArray() : null;
+        for (int i : byEstimate) {
+            if (ranges[i] != null) {
+                result = result == null ? ranges[i] : intersect(result, ranges[i]);
+                exact.add(criteria.get(i));
+            }
+        }
+
+        // Остальные: кандидаты из триграмм сужают результат, проверка - в порядке избирательности
+        List<MineralQuery.Criterion> indexed = new ArrayList<>();
+        List<MineralQuery.Criterion> checks = new ArrayList<>();
+        List<Integer> checkEstimates = new ArrayList<>();
+        for (int i : byEstimate) {
+            if (bitmaps[i] != null || ranges[i] != null) {
+                continue;
+            }
+            checks.add(criteria.get(i));
+            checkEstimates.add(estimates[i]);
+            if (postings[i] != null && (result == null || result.length > 0)) {
+                result = result == null ? postings[i] : intersect(result, postings[i]);
+                indexed.add(criteria.get(i));
+            }
+        }
+        // Если какое-то условие заведомо ничего не находит, проверять нечего
+        if (estimates[byEstimate[0]] == 0) {
+            result = new int[0];
+        }
+        return new Plan(exact, indexed, result, checks, checkEstimates);
+    }
+
+    // Точный ответ битмап-индекса или null, если признак не индексирован битмапами
+    private static IdBitmap bitmap(BitmapIndex bitmaps, MineralQuery.Criterion criterion) {
+        switch (criterion.getField()) {
+            case MINERAL_CLASS:
+                return bitmaps.equalTo(BitmapIndex.Attribute.MINERAL_CLASS, criterion.getTerm());
+            case VALUE_CATEGORY:
+                return bitmaps.containing(BitmapIndex.Attribute.VALUE_CATEGORY, criterion.getTerm());
+            case LUSTER:
+                return bitmaps.containing(BitmapIndex.Attribute.LUSTER, criterion.getTerm());
+            case CLEAVAGE:
+                return bitmaps.containing(BitmapIndex.Attribute.CLEAVAGE, criterion.getTerm());
+            case GENESIS:
+                return bitmaps.containing(BitmapIndex.Attribute.GENESIS, criterion.getTerm());
+            default:
+                return null;
+        }
+    }
+
+    // Точный ответ дерева интервалов или null для нечисловых условий
+    private static int[] range(CatalogIndexes indexes, MineralQuery.Criterion criterion) {
+        IntervalTree tree;
+        switch (criterion.getField()) {
+            case HARDNESS:
+                tree = indexes.getHardness();
+                break;
+            case SPECIFIC_GRAVITY:
+                tree = indexes.getSpecificGravity();
+                break;
+            default:
+                return null;
+        }
+        return tree.overlapping(criterion.getLow(), criterion.isLowInclusive(),
+                criterion.getHigh(), criterion.isHighInclusive());
+    }
+
+    // Кандидаты из триграммного индекса или null, если индекс к условию не применим
+    private static int[] candidates(CatalogIndexes indexes, MineralQuery.Criterion criterion) {
+        switch (criterion.getField()) {
+            case NAME:
+                return indexes.getNameGrams().candidates(criterion.getTerm());
+            case COLOR:
+            case LOCATION:
+            case TEXT:
+                // Эти поля входят в индекс по всем полям; лишние кандидаты отсеет проверка
+                return indexes.getTextGrams().candidates(criterion.getTerm());
+            default:
+                return null;
+        }
+    }
+
+    // Оценка числа подходящих минералов
+    private static int estimate(CatalogSnapshot snapshot, MineralQuery.Criterion criterion, int[] posting) {
+        FacetIndex facets = snapshot.indexes().getFacets();
+        switch (criterion.getField()) {
+            case COLOR:
+                return facetMatches(facets.histogram(FacetIndex.Facet.COLOR), criterion.getTerm());
+            case LOCATION:
+                return facetMatches(facets.histogram(FacetIndex.Facet.LOCATION), criterion.getTerm());
+            default:
+                return posting != null ? posting.length : snapshot.size();
+        }
+    }
+
+    // Сумма счётчиков значений фасета, подходящих под свёрнутый term; различных значений
+    // обычно намного меньше, чем минералов, так что это дешевле прохода по коллекции
+    private static int facetMatches(Map<String, Integer> histogram, String term) {
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : histogram.entrySet()) {
+            if (TextFolding.fold(entry.getKey()).contains(term)) {
+                total += entry.getValue();
+            }
+        }
+        return total;
+    }
+
+    // Пересечение двух отсортированных списков ID
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+}
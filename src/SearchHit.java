@@ -0,0 +1,20 @@
+/**
+ * Минерал из ранжированного поиска или поиска похожих вместе с его оценкой
+ */
+public final class SearchHit {
+    private final Mineral mineral;
+    private final double score;
+
+    public SearchHit(Mineral mineral, double score) {
+        this.mineral = mineral;
+        this.score = score;
+    }
+
+    public Mineral getMineral() {
+        return mineral;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Словарь значений одного столбца {@link MineralColumns}: каждое различное значение
+ * хранится один раз вместе со свёрнутой формой, а строки столбца хранят только его код.
+ *
+ * Версия словаря неизменяема для читателей: новые значения дописываются за {@code size}
+ * (при росте - в новый массив), так что коды, видимые старой версии, не меняются.
+ * Отображение значение → код общее для всех версий и используется только писателем.
+ *
+ * Словарь числового столбца (твердость, плотность) дополнительно хранит границы,
+ * разобранные из каждого значения через {@link NumericRange}.
+ */
+final class StringDictionary {
+    private final String[] values;
+    private final String[] folded;
+    // Границы значений числового столбца, иначе null
+    private final double[] mins;
+    private final double[] maxes;
+    private final int size;
+    private final Map<String, Integer> codes;
+
+    private StringDictionary(String[] values, String[] folded, double[] mins, double[] maxes,
+                             int size, Map<String, Integer> codes) {
+        this.values = values;
+        this.folded = folded;
+        this.mins = mins;
+        this.maxes = maxes;
+        this.size = size;
+        this.codes = codes;
+    }
+
+    /**
+     * Новый пустой словарь. Общий пустой экземпляр не годится: версии дописывают в его массивы
+     */
+    static StringDictionary empty(boolean numeric) {
+        return new StringDictionary(new String[8], new String[8],
+                numeric ? new double[8] : null, numeric ? new double[8] : null, 0, new HashMap<>());
+    }
+
+    String value(int code) {
+        return values[code];
+    }
+
+    /**
+     * Свёрнутая форма значения (см. TextFolding)
+     */
+    String folded(int code) {
+        return folded[code];
+    }
+
+    /**
+     * Нижняя граница числового значения или NaN
+     */
+    double min(int code) {
+        return mins[code];
+    }
+
+    /**
+     * Верхняя граница числового значения или NaN
+     */
+    double max(int code) {
+        return maxes[code];
+    }
+
+    int size() {
+        return size;
+    }
+
+    Builder edit() {
+        return new Builder(this);
+    }
+
+    /**
+     * Дописывание новых значений для следующей версии. Вызывать только под блокировкой писателя
+     */
+    static final class Builder {
+        private String[] values;
+        private String[] folded;
+        private double[] mins;
+        private double[] maxes;
+        private int size;
+        private Map<String, Integer> codes;
+
+        private Builder(StringDictionary base) {
+            values = base.values;
+            folded = base.folded;
+            mins = base.mins;
+            maxes = base.maxes;
+            size = base.size;
+            codes = base.codes;
+        }
+
+        int encode(String value) {
+            Integer code = codes.get(value);
+            // Код мог остаться от незавершённой сборки на той же версии - тогда он недействителен
+            if (code != null && code < size && values[code].equals(value)) {
+                return code;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                folded = Arrays.copyOf(folded, size * 2);
+                if (mins != null) {
+                    mins = Arrays.copyOf(mins, size * 2);
+                    maxes = Arrays.copyOf(maxes, size * 2);
+                }
+            }
+            values[size] = value;
+            folded[size] = TextFolding.fold(value);
+            if (mins != null) {
+                NumericRange range = NumericRange.parse(value);
+                mins[size] = range.getMin();
+                maxes[size] = range.getMax();
+            }
+            codes.put(value, size);
+            return size++;
+        }
+
+        StringDictionary build() {
+            return new StringDictionary(values, folded, mins, maxes, size, codes);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный пул строк для значений, которые повторяются от записи к записи:
+ * класс, блеск, месторождение, категория ценности и т.п. При загрузке из БД или CSV
+ * каждая ячейка приходит новой строкой; пул заменяет её уже сохранённым экземпляром,
+ * и копия сразу становится мусором, а не живёт в куче до конца работы.
+ *
+ * Пул - таблица прямого отображения фиксированного размера: слот выбирается по хэшу,
+ * при коллизии старое значение вытесняется. Поэтому пул не растёт, не требует
+ * блокировок и никогда не ошибается - в худшем случае строка просто не заменится.
+ */
+public final class StringPool {
+    // Длинный свободный текст почти не повторяется и только вытеснял бы полезные значения
+    static final int MAX_LENGTH = 64;
+    private static final int DEFAULT_CAPACITY = 4096;
+
+    private static final StringPool SHARED = new StringPool(DEFAULT_CAPACITY);
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * @param capacity число слотов, округляется вверх до степени двойки
+     */
+    public StringPool(int capacity) {
+        int size = Integer.highestOneBit(Math.max(16, capacity - 1) << 1);
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Общий пул, через который проходят сеттеры {@link Mineral}
+     */
+    public static StringPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Сохранённый экземпляр строки с тем же значением или сама строка
+     */
+    public String intern(String value) {
+        if (value == null || value.isEmpty() || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        int hash = value.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String pooled = slots.get(slot);
+        if (pooled == value) {
+            return pooled;
+        }
+        if (pooled != null && pooled.equals(value)) {
+            hits.increment();
+            bytesSaved.add(retainedBytes(value));
+            return pooled;
+        }
+        slots.set(slot, value);
+        return value;
+    }
+
+    /**
+     * Сколько раз строка была заменена сохранённым экземпляром
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Оценка памяти в байтах, которую заняли бы заменённые копии
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Число занятых слотов
+     */
+    public int size() {
+        int count = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Счётчики пула на момент вызова - начало загрузки для {@link #report(Mark)}
+     */
+    public Mark mark() {
+        return new Mark(getHits(), getBytesSaved());
+    }
+
+    /**
+     * Короткий отчёт для журнала загрузки: замены и экономия с момента since, то есть за эту загрузку,
+     * а не за всё время работы. Загрузки, идущие одновременно, попадают в отчёты друг друга
+     */
+    public String report(Mark since) {
+        return String.format("♻️ Пул строк: %d значений, %d повторов заменено, сэкономлено ~%.1f КБ",
+                size(), getHits() - since.hits, (getBytesSaved() - since.bytesSaved) / 1024.0);
+    }
+
+    /**
+     * Значения счётчиков пула в какой-то момент
+     */
+    public static final class Mark {
+        private final long hits;
+        private final long bytesSaved;
+
+        private Mark(long hits, long bytesSaved) {
+            this.hits = hits;
+            this.bytesSaved = bytesSaved;
+        }
+    }
+
+    /**
+     * Размер строки в куче при сжатых строках и указателях (64-битная JVM):
+     * объект String 24 байта плюс массив с заголовком 16 байт, выровненный до 8.
+     * Латиница хранится по байту на символ, кириллица - по два
+     */
+    static long retainedBytes(String value) {
+        int length = value.length();
+        int bytesPerChar = 1;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        long array = 16 + (long) length * bytesPerChar;
+        return 24 + ((array + 7) & ~7L);
+    }
+}
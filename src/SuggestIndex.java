@@ -0,0 +1,527 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Подсказки при наборе: названия минералов и месторождения, которые начинаются с введённого.
+ * Подсказка находится по началу любого своего слова ("куйб" → "Малый Куйбас"), а название -
+ * ещё и по синонимам из {@link SynonymDictionary} ("quar" → "Кварц").
+ *
+ * Ключи лежат в сжатом префиксном дереве, и каждый узел хранит лучшие
+ * {@link #MAX_SUGGESTIONS} подсказок своего поддерева - по популярности, то есть по числу
+ * минералов с этим названием или месторождением. Поэтому ответ - спуск по буквам префикса
+ * без обхода поддерева. При изменении лучшие подсказки пересчитываются только на пути
+ * к ключу и только в узлах, где изменённая подсказка была или могла стать лучшей.
+ *
+ * Узлы неизменяемы, изменение копирует путь от корня, поэтому {@link #copy()} стоит O(1).
+ */
+public class SuggestIndex {
+    public static final int MAX_SUGGESTIONS = 10;
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Suggestion[] NO_SUGGESTIONS = new Suggestion[0];
+
+    public enum Kind {
+        NAME("name"),
+        LOCATION("location");
+
+        private final String key;
+
+        Kind(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /**
+     * Подсказка: текст, откуда он взят и у скольких минералов встречается
+     */
+    public static final class Suggestion {
+        private final Kind kind;
+        private final String text;
+        // Свёрнутый текст; вместе с kind определяет подсказку
+        private final String folded;
+        private final int count;
+
+        private Suggestion(Kind kind, String text, String folded, int count) {
+            this.kind = kind;
+            this.text = text;
+            this.folded = folded;
+            this.count = count;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        boolean sameAs(Kind otherKind, String otherFolded) {
+            return kind == otherKind && folded.equals(otherFolded);
+        }
+
+        // Популярнее, при равенстве названия раньше месторождений, затем по алфавиту
+        boolean isBetterThan(Suggestion other) {
+            if (count != other.count) {
+                return count > other.count;
+            }
+            if (kind != other.kind) {
+                return kind.ordinal() < other.kind.ordinal();
+            }
+            return folded.compareTo(other.folded) < 0;
+        }
+    }
+
+    private static final class Node {
+        // Буквы на ребре от родителя к узлу; у корня пусто
+        final char[] label;
+        // Потомки по возрастанию первой буквы ребра
+        final Node[] children;
+        // Подсказки, ключ которых заканчивается в этом узле
+        final Suggestion[] entries;
+        // Лучшие подсказки поддерева, от лучшей к худшей
+        final Suggestion[] top;
+
+        Node(char[] label, Node[] children, Suggestion[] entries, Suggestion[] top) {
+            this.label = label;
+            this.children = children;
+            this.entries = entries;
+            this.top = top;
+        }
+
+        int childIndex(char first) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char c = children[mid].label[0];
+                if (c < first) {
+                    low = mid + 1;
+                } else if (c > first) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+
+    private Node root;
+
+    public SuggestIndex() {
+        this(new Node(new char[0], NO_CHILDREN, NO_SUGGESTIONS, NO_SUGGESTIONS));
+    }
+
+    private SuggestIndex(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Копия для следующей версии снимка: узлы общие, изменения копируют путь
+     */
+    public SuggestIndex copy() {
+        return new SuggestIndex(root);
+    }
+
+    public void add(Mineral mineral) {
+        if (!mineral.getName().isEmpty()) {
+            change(Kind.NAME, mineral.getName(), 1);
+        }
+        for (String location : locationsOf(mineral)) {
+            change(Kind.LOCATION, location, 1);
+        }
+    }
+
+    /**
+     * Добавить минералы пакетом: сначала подсчитывается, у скольких из них каждая подсказка,
+     * и каждая подсказка меняется в дереве один раз. Пустое дерево собирается целиком снизу вверх
+     */
+    public void addAll(List<Mineral> minerals) {
+        Map<Kind, Map<String, Suggestion>> counted = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            counted.put(kind, new LinkedHashMap<>());
+        }
+        for (Mineral mineral : minerals) {
+            if (!mineral.getName().isEmpty()) {
+                count(counted.get(Kind.NAME), Kind.NAME, mineral.getName());
+            }
+            for (String location : locationsOf(mineral)) {
+                count(counted.get(Kind.LOCATION), Kind.LOCATION, location);
+            }
+        }
+        if (root.children.length == 0 && root.entries.length == 0) {
+            root = built(counted);
+            return;
+        }
+        for (Map<String, Suggestion> suggestions : counted.values()) {
+            for (Suggestion suggestion : suggestions.values()) {
+                change(suggestion.kind, suggestion.text, suggestion.count);
+            }
+        }
+    }
+
+    public void remove(Mineral mineral) {
+        if (!mineral.getName().isEmpty()) {
+            change(Kind.NAME, mineral.getName(), -1);
+        }
+        for (String location : locationsOf(mineral)) {
+            change(Kind.LOCATION, location, -1);
+        }
+    }
+
+    /**
+     * До limit лучших подсказок для начала слова prefix (без учёта регистра и "ё")
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        char[] query = TextFolding.fold(prefix.trim()).toCharArray();
+        Node node = root;
+        int offset = 0;
+        while (offset < query.length) {
+            int index = node.childIndex(query[offset]);
+            if (index < 0) {
+                return Collections.emptyList();
+            }
+            node = node.children[index];
+            int common = commonPrefix(node.label, query, offset);
+            if (offset + common == query.length) {
+                break;
+            }
+            if (common < node.label.length) {
+                return Collections.emptyList();
+            }
+            offset += common;
+        }
+        Suggestion[] top = node.top;
+        return Arrays.asList(Arrays.copyOf(top, Math.min(Math.max(limit, 0), top.length)));
+    }
+
+    // Месторождения минерала: части поля location через запятую или точку с запятой
+    static Set<String> locationsOf(Mineral mineral) {
+        Set<String> locations = new LinkedHashSet<>();
+        for (String part : mineral.getLocation().split("[,;]")) {
+            String location = part.trim();
+            if (!location.isEmpty()) {
+                locations.add(location);
+            }
+        }
+        return locations;
+    }
+
+    // Прибавить единицу к подсказке в пакете; текст - как у первого минерала с ней
+    private static void count(Map<String, Suggestion> counted, Kind kind, String text) {
+        String folded = TextFolding.fold(text);
+        Suggestion current = counted.get(folded);
+        counted.put(folded, new Suggestion(kind, current != null ? current.text : text, folded,
+                current != null ? current.count + 1 : 1));
+    }
+
+    // Дерево из готовых подсказок: все пары (ключ, подсказка) сортируются по ключу и делятся по буквам
+    private static Node built(Map<Kind, Map<String, Suggestion>> counted) {
+        List<String> keys = new ArrayList<>();
+        List<Suggestion> owners = new ArrayList<>();
+        for (Map.Entry<Kind, Map<String, Suggestion>> byKind : counted.entrySet()) {
+            for (Suggestion suggestion : byKind.getValue().values()) {
+                for (String key : keysOf(byKind.getKey(), suggestion.folded)) {
+                    keys.add(key);
+                    owners.add(suggestion);
+                }
+            }
+        }
+        Integer[] order = new Integer[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b)));
+        String[] sortedKeys = new String[order.length];
+        Suggestion[] sortedOwners = new Suggestion[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = keys.get(order[i]);
+            sortedOwners[i] = owners.get(order[i]);
+        }
+        return built(sortedKeys, sortedOwners, 0, sortedKeys.length, 0, new char[0]);
+    }
+
+    // Узел для ключей [from, to) с общим началом длины depth; label - буквы ребра от родителя
+    private static Node built(String[] keys, Suggestion[] owners, int from, int to, int depth, char[] label) {
+        int i = from;
+        while (i < to && keys[i].length() == depth) {
+            i++;
+        }
+        Suggestion[] entries = Arrays.copyOfRange(owners, from, i);
+        Arrays.sort(entries, (a, b) -> a.isBetterThan(b) ? -1 : b.isBetterThan(a) ? 1 : 0);
+        List<Node> children = new ArrayList<>();
+        while (i < to) {
+            char first = keys[i].charAt(depth);
+            int j = i + 1;
+            while (j < to && keys[j].charAt(depth) == first) {
+                j++;
+            }
+            // Ключи отсортированы, поэтому общее начало группы - общее начало первого и последнего
+            String low = keys[i];
+            String high = keys[j - 1];
+            int end = depth + 1;
+            while (end < low.length() && end < high.length() && low.charAt(end) == high.charAt(end)) {
+                end++;
+            }
+            children.add(built(keys, owners, i, j, end, low.substring(depth, end).toCharArray()));
+            i = j;
+        }
+        Node[] childArray = children.toArray(NO_CHILDREN);
+        return new Node(label, childArray, entries, best(childArray, entries));
+    }
+
+    private void change(Kind kind, String text, int delta) {
+        String folded = TextFolding.fold(text);
+        Suggestion current = find(kind, folded);
+        int count = (current != null ? current.count : 0) + delta;
+        if (count < 0) {
+            return;
+        }
+        // Текст подсказки - как он записан у первого минерала с ним
+        Suggestion updated = count > 0
+                ? new Suggestion(kind, current != null ? current.text : text, folded, count)
+                : null;
+        for (String key : keysOf(kind, folded)) {
+            root = update(root, key.toCharArray(), 0, kind, folded, updated);
+        }
+    }
+
+    // Начала слов текста и, для названий, слова-синонимы
+    private static Set<String> keysOf(Kind kind, String folded) {
+        Set<String> keys = new LinkedHashSet<>();
+        // Первый ключ - сам текст: по нему find находит текущую подсказку
+        keys.add(folded);
+        for (int i = 0; i < folded.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(folded.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(folded.charAt(i - 1)));
+            if (wordStart) {
+                keys.add(folded.substring(i));
+            }
+        }
+        if (kind == Kind.NAME) {
+            SynonymDictionary synonyms = SynonymDictionary.shared();
+            for (String term : TextAnalyzer.terms(folded)) {
+                keys.addAll(synonyms.words(term));
+            }
+        }
+        return keys;
+    }
+
+    private Suggestion find(Kind kind, String folded) {
+        char[] key = folded.toCharArray();
+        Node node = root;
+        int offset = 0;
+        while (offset < key.length) {
+            int index = node.childIndex(key[offset]);
+            if (index < 0) {
+                return null;
+            }
+            node = node.children[index];
+            if (commonPrefix(node.label, key, offset) < node.label.length) {
+                return null;
+            }
+            offset += node.label.length;
+        }
+        for (Suggestion entry : node.entries) {
+            if (entry.sameAs(kind, folded)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // Заменить подсказку (kind, folded) на updated (null - убрать) в ключе key; возвращает null, если узел не нужен
+    private Node update(Node node, char[] key, int offset, Kind kind, String folded, Suggestion updated) {
+        if (offset == key.length) {
+            // Подсказки узла упорядочены так же, как лучшие: убрать прежнюю и вставить новую на место
+            Suggestion[] entries = node.entries;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].sameAs(kind, folded)) {
+                    Suggestion[] others = new Suggestion[entries.length - 1];
+                    System.arraycopy(entries, 0, others, 0, i);
+                    System.arraycopy(entries, i + 1, others, i, others.length - i);
+                    entries = others;
+                    break;
+                }
+            }
+            if (updated != null) {
+                entries = inserted(entries, updated, entries.length + 1);
+            }
+            return rebuilt(node, node.children, entries, kind, folded, updated);
+        }
+        int index = node.childIndex(key[offset]);
+        if (index < 0) {
+            if (updated == null) {
+                return node;
+            }
+            Suggestion[] entries = {updated};
+            Node leaf = new Node(Arrays.copyOfRange(key, offset, key.length), NO_CHILDREN, entries, entries);
+            int insertAt = -index - 1;
+            Node[] children = new Node[node.children.length + 1];
+            System.arraycopy(node.children, 0, children, 0, insertAt);
+            children[insertAt] = leaf;
+            System.arraycopy(node.children, insertAt, children, insertAt + 1, node.children.length - insertAt);
+            return rebuilt(node, children, node.entries, kind, folded, updated);
+        }
+        Node child = node.children[index];
+        int common = commonPrefix(child.label, key, offset);
+        if (common < child.label.length) {
+            if (updated == null) {
+                return node;
+            }
+            // Ключ расходится с ребром посередине: ребро делится промежуточным узлом
+            Node tail = new Node(Arrays.copyOfRange(child.label, common, child.label.length),
+                    child.children, child.entries, child.top);
+            child = new Node(Arrays.copyOf(child.label, common), new Node[] {tail}, NO_SUGGESTIONS, child.top);
+        }
+        Node updatedChild = update(child, key, offset + common, kind, folded, updated);
+        Node[] children;
+        if (updatedChild != null) {
+            children = node.children.clone();
+            children[index] = updatedChild;
+        } else {
+            children = new Node[node.children.length - 1];
+            System.arraycopy(node.children, 0, children, 0, index);
+            System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        }
+        return rebuilt(node, children, node.entries, kind, folded, updated);
+    }
+
+    // Узел с новыми потомками и подсказками; лучшие пересчитываются, только если изменение их касается
+    private Node rebuilt(Node node, Node[] children, Suggestion[] entries, Kind kind, String folded,
+                         Suggestion updated) {
+        boolean isRoot = node.label.length == 0;
+        if (!isRoot && entries.length == 0) {
+            // Узел без подсказок убирается, если у него нет потомков, и сливается с единственным потомком
+            if (children.length == 0) {
+                return null;
+            }
+            if (children.length == 1) {
+                Node child = children[0];
+                char[] label = Arrays.copyOf(node.label, node.label.length + child.label.length);
+                System.arraycopy(child.label, 0, label, node.label.length, child.label.length);
+                return new Node(label, child.children, child.entries, child.top);
+            }
+        }
+        Suggestion[] top = adjustedTop(node.top, kind, folded, updated);
+        if (top == null) {
+            top = best(children, entries);
+        }
+        return new Node(node.label, children, entries, top);
+    }
+
+    /**
+     * Лучшие подсказки после замены одной из них, если их можно получить из прежних:
+     * подсказка стала популярнее или не помещалась в список. Если подсказка из полного
+     * списка стала менее популярной, её место может занять любая из поддерева - тогда null
+     */
+    private static Suggestion[] adjustedTop(Suggestion[] top, Kind kind, String folded, Suggestion updated) {
+        int position = -1;
+        for (int i = 0; i < top.length; i++) {
+            if (top[i].sameAs(kind, folded)) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            if (updated == null) {
+                return top;
+            }
+            if (top.length == MAX_SUGGESTIONS && !updated.isBetterThan(top[top.length - 1])) {
+                return top;
+            }
+            return inserted(top, updated, Math.min(top.length + 1, MAX_SUGGESTIONS));
+        }
+        // Неполный список - это все подсказки поддерева, его всегда можно поправить на месте
+        boolean complete = top.length < MAX_SUGGESTIONS;
+        Suggestion[] others = new Suggestion[top.length - 1];
+        System.arraycopy(top, 0, others, 0, position);
+        System.arraycopy(top, position + 1, others, position, others.length - position);
+        if (updated == null) {
+            return complete ? others : null;
+        }
+        if (complete || !top[position].isBetterThan(updated)) {
+            return inserted(others, updated, top.length);
+        }
+        // Стала менее популярной: в полном списке её может обойти подсказка извне
+        return null;
+    }
+
+    // Вставить подсказку в упорядоченный список, оставив не больше size элементов
+    private static Suggestion[] inserted(Suggestion[] sorted, Suggestion suggestion, int size) {
+        Suggestion[] result = new Suggestion[size];
+        int from = 0;
+        int to = 0;
+        boolean placed = false;
+        while (to < size) {
+            if (!placed && (from == sorted.length || suggestion.isBetterThan(sorted[from]))) {
+                result[to++] = suggestion;
+                placed = true;
+            } else {
+                result[to++] = sorted[from++];
+            }
+        }
+        return result;
+    }
+
+    // Слияние уже упорядоченных списков: подсказки узла и лучшие каждого потомка
+    private static Suggestion[] best(Node[] children, Suggestion[] entries) {
+        Suggestion[][] lists = new Suggestion[children.length + 1][];
+        lists[0] = entries;
+        for (int i = 0; i < children.length; i++) {
+            lists[i + 1] = children[i].top;
+        }
+        int[] positions = new int[lists.length];
+        List<Suggestion> result = new ArrayList<>(MAX_SUGGESTIONS);
+        while (result.size() < MAX_SUGGESTIONS) {
+            int bestList = -1;
+            for (int i = 0; i < lists.length; i++) {
+                if (positions[i] < lists[i].length && (bestList < 0
+                        || lists[i][positions[i]].isBetterThan(lists[bestList][positions[bestList]]))) {
+                    bestList = i;
+                }
+            }
+            if (bestList < 0) {
+                break;
+            }
+            Suggestion candidate = lists[bestList][positions[bestList]++];
+            // Одна подсказка может прийти из нескольких ключей (разные слова одного текста)
+            boolean duplicate = false;
+            for (Suggestion chosen : result) {
+                if (chosen.sameAs(candidate.kind, candidate.folded)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                result.add(candidate);
+            }
+        }
+        return result.toArray(NO_SUGGESTIONS);
+    }
+
+    private static int commonPrefix(char[] label, char[] key, int offset) {
+        int limit = Math.min(label.length, key.length - offset);
+        int i = 0;
+        while (i < limit && label[i] == key[offset + i]) {
+            i++;
+        }
+        return i;
+    }
+}
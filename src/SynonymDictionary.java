@@ -0,0 +1,128 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Словарь синонимов для поиска по словам: группы слов, которые считаются одним термином,
+ * например "гематит, hematite, кровавик". Каждое слово группы проходит тот же разбор,
+ * что и текст ({@link TextAnalyzer}), и заменяется первым словом группы - и при
+ * индексации, и в запросе, поэтому синоним находит записи без расширения запроса.
+ *
+ * Словарь читается из файла synonyms.txt в рабочей папке (одна группа в строке,
+ * слова через запятую, # - комментарий), а без файла используется встроенный набор.
+ * Синонимы - одиночные слова: группа из нескольких слов в строке файла пропускается.
+ */
+public final class SynonymDictionary {
+    static final String FILE_NAME = "synonyms.txt";
+
+    private static final List<String> DEFAULT_GROUPS = Arrays.asList(
+            "кварц, quartz",
+            "алмаз, diamond, бриллиант",
+            "гематит, hematite, кровавик",
+            "пирит, pyrite",
+            "галит, halite",
+            "флюорит, fluorite, плавиковый",
+            "кальцит, calcite",
+            "корунд, corundum",
+            "малахит, malachite",
+            "золото, gold",
+            "серебро, silver",
+            "медь, copper"
+    );
+
+    private static volatile SynonymDictionary shared;
+
+    // Основа слова → основа первого слова группы
+    private final Map<String, String> canonical;
+    // Основа первого слова группы → все слова группы (свёрнутые, как записаны)
+    private final Map<String, List<String>> groups;
+
+    private SynonymDictionary(Map<String, String> canonical, Map<String, List<String>> groups) {
+        this.canonical = canonical;
+        this.groups = groups;
+    }
+
+    /**
+     * Словарь, с которым строятся индексы каталога. Файл читается при первом обращении
+     */
+    public static SynonymDictionary shared() {
+        SynonymDictionary dictionary = shared;
+        if (dictionary == null) {
+            synchronized (SynonymDictionary.class) {
+                dictionary = shared;
+                if (dictionary == null) {
+                    dictionary = load(Paths.get(FILE_NAME));
+                    shared = dictionary;
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * Словарь из файла или встроенный, если файла нет или его не удалось прочитать
+     */
+    public static SynonymDictionary load(Path file) {
+        if (Files.isRegularFile(file)) {
+            try {
+                return of(Files.readAllLines(file, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.out.println("Ошибка чтения словаря синонимов: " + e.getMessage());
+            }
+        }
+        return of(DEFAULT_GROUPS);
+    }
+
+    /**
+     * Словарь из строк формата synonyms.txt
+     */
+    public static SynonymDictionary of(List<String> lines) {
+        Map<String, String> canonical = new HashMap<>();
+        Map<String, List<String>> groups = new HashMap<>();
+        for (String line : lines) {
+            int comment = line.indexOf('#');
+            String group = comment >= 0 ? line.substring(0, comment) : line;
+            String first = null;
+            for (String word : group.split(",")) {
+                List<String> stems = TextAnalyzer.stems(word);
+                if (stems.size() != 1) {
+                    continue;
+                }
+                String stem = stems.get(0);
+                if (first == null) {
+                    first = stem;
+                }
+                if (canonical.putIfAbsent(stem, first) == null) {
+                    groups.computeIfAbsent(first, key -> new ArrayList<>()).add(TextFolding.fold(word.trim()));
+                }
+            }
+        }
+        return new SynonymDictionary(canonical, groups);
+    }
+
+    /**
+     * Термин для основы слова: основа первого слова группы или сама основа
+     */
+    public String canonical(String stem) {
+        return canonical.getOrDefault(stem, stem);
+    }
+
+    /**
+     * Слова группы с термином term (свёрнутые) или пустой список
+     */
+    public List<String> words(String term) {
+        return groups.getOrDefault(term, Collections.emptyList());
+    }
+
+    public int size() {
+        return canonical.size();
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Разбор текста на термины для поиска по словам.
+ * Текст делится на слова, слова сворачиваются ({@link TextFolding}), слова из латинских
+ * букв переводятся в кириллицу ("kvarts" → "кварц"), у слов отрезаются окончания
+ * ("кварцы", "кварца" → "кварц"; "черная", "чёрный" → "черн"), а синонимы заменяются
+ * термином группы ({@link SynonymDictionary}). Предлоги и союзы не индексируются.
+ *
+ * Стеммер лёгкий: снимается только одно самое длинное окончание и основа не короче
+ * трёх букв, поэтому разные слова с общим корнем ("кварцевый") не склеиваются.
+ */
+public final class TextAnalyzer {
+    private static final int MIN_STEM_LENGTH = 3;
+
+    // Окончания прилагательных, существительных и причастий (свёрнутые), от длинных к коротким
+    private static final String[] ENDINGS = {
+            "ого", "его", "ому", "ему", "ыми", "ими", "ами", "ями",
+            "ая", "яя", "ую", "юю", "ой", "ей", "ый", "ий", "ое", "ее", "ые", "ие",
+            "ым", "им", "ом", "ем", "ых", "их", "ах", "ях", "ам", "ям", "ов", "ев",
+            "ью", "ия", "ии", "ию",
+            "а", "я", "о", "е", "ы", "и", "у", "ю", "ь", "й"
+    };
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "и", "в", "во", "на", "с", "со", "по", "из", "от", "до", "для", "или", "а", "но", "не", "к", "о", "об"
+    ));
+
+    // Латиница → кириллица: сначала сочетания, затем одиночные буквы
+    private static final String[][] DIGRAPHS = {
+            {"shch", "щ"}, {"sch", "щ"}, {"zh", "ж"}, {"kh", "х"}, {"ts", "ц"}, {"tz", "ц"},
+            {"ch", "ч"}, {"sh", "ш"}, {"yu", "ю"}, {"ya", "я"}, {"yo", "е"}, {"ye", "е"},
+            {"ju", "ю"}, {"ja", "я"}
+    };
+    private static final String LATIN = "abcdefghijklmnopqrstuvwxyz";
+    private static final String[] CYRILLIC = {
+            "а", "б", "к", "д", "е", "ф", "г", "х", "и", "й", "к", "л", "м",
+            "н", "о", "п", "к", "р", "с", "т", "у", "в", "в", "кс", "ы", "з"
+    };
+
+    private TextAnalyzer() {
+    }
+
+    /**
+     * Термины текста в порядке следования, с повторами
+     */
+    public static List<String> terms(String text) {
+        List<String> stems = stems(text);
+        SynonymDictionary synonyms = SynonymDictionary.shared();
+        for (int i = 0; i < stems.size(); i++) {
+            stems.set(i, synonyms.canonical(stems.get(i)));
+        }
+        return stems;
+    }
+
+    /**
+     * Основы слов текста без замены синонимов
+     */
+    static List<String> stems(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                String word = TextFolding.fold(text.substring(start, i));
+                if (!STOP_WORDS.contains(word)) {
+                    result.add(stem(transliterate(word)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Слово из одних латинских букв в кириллице, иначе то же слово
+     */
+    static String transliterate(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return word;
+            }
+        }
+        StringBuilder result = new StringBuilder(word.length());
+        int i = 0;
+        outer:
+        while (i < word.length()) {
+            for (String[] digraph : DIGRAPHS) {
+                if (word.startsWith(digraph[0], i)) {
+                    result.append(digraph[1]);
+                    i += digraph[0].length();
+                    continue outer;
+                }
+            }
+            result.append(CYRILLIC[LATIN.indexOf(word.charAt(i))]);
+            i++;
+        }
+        return result.toString();
+    }
+
+    static String stem(String word) {
+        for (String ending : ENDINGS) {
+            if (word.length() - ending.length() >= MIN_STEM_LENGTH && word.endsWith(ending)) {
+                return word.substring(0, word.length() - ending.length());
+            }
+        }
+        return word;
+    }
+}
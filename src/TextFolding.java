@@ -0,0 +1,35 @@
+/**
+ * Приведение текста к форме для сравнения без учёта регистра:
+ * нижний регистр посимвольно и "ё" → "е".
+ * Длина строки не меняется, поэтому позиции совпадений в свёрнутом и исходном тексте одинаковы
+ */
+public final class TextFolding {
+
+    private TextFolding() {
+    }
+
+    /**
+     * Свёрнутая форма строки. Если сворачивать нечего, возвращается тот же объект
+     */
+    public static String fold(String text) {
+        if (text == null) return "";
+        int length = text.length();
+        int i = 0;
+        while (i < length && foldChar(text.charAt(i)) == text.charAt(i)) {
+            i++;
+        }
+        if (i == length) {
+            return text;
+        }
+        char[] chars = text.toCharArray();
+        for (; i < length; i++) {
+            chars[i] = foldChar(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    public static char foldChar(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+}
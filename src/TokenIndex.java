@@ -0,0 +1,113 @@
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Инвертированный индекс терминов ({@link TextAnalyzer}) по полям, где ищет
+ * searchInAllFields: для каждого термина хранится {@link IdBitmap} с ID минералов,
+ * в тексте которых он встречается. Запрос из нескольких слов - пересечение битмапов,
+ * поэтому "черный кварц" находит "Морион (Черная разновидность кварца)" без прохода
+ * по строкам.
+ *
+ * Как и в {@link BitmapIndex}, {@link #copy()} разделяет битмапы с исходным индексом,
+ * а изменяемый битмап копируется при первой записи в него. Терминов почти столько же,
+ * сколько уникальных названий и месторождений, поэтому сам словарь терминов - {@link PagedHashMap}:
+ * новая версия копирует только страницы, в которые пишет.
+ */
+public class TokenIndex {
+    private final PagedHashMap<String, IdBitmap> postings;
+    // Битмапы, скопированные этой версией индекса; остальные общие с предыдущей
+    private final Set<String> owned;
+
+    public TokenIndex() {
+        postings = new PagedHashMap<>();
+        owned = new HashSet<>();
+    }
+
+    private TokenIndex(TokenIndex other) {
+        postings = other.postings.copy();
+        owned = new HashSet<>();
+    }
+
+    /**
+     * Копия для следующей версии снимка: словарь терминов и битмапы общие до первого изменения
+     */
+    public TokenIndex copy() {
+        return new TokenIndex(this);
+    }
+
+    /**
+     * Проиндексировать минерал; terms - термины его текста (повторы не важны)
+     */
+    public void add(int id, Collection<String> terms) {
+        for (String term : new HashSet<>(terms)) {
+            own(term).add(id);
+        }
+    }
+
+    /**
+     * Убрать минерал; terms - те же термины, что были переданы в {@link #add}
+     */
+    public void remove(int id, Collection<String> terms) {
+        for (String term : new HashSet<>(terms)) {
+            if (!postings.containsKey(term)) {
+                continue;
+            }
+            IdBitmap bitmap = own(term);
+            bitmap.remove(id);
+            if (bitmap.isEmpty()) {
+                postings.remove(term);
+                owned.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Минералы, в тексте которых есть все термины запроса, или null,
+     * если в запросе нет ни одного термина (только предлоги и знаки). Битмап только для чтения
+     */
+    public IdBitmap matchingAll(String query) {
+        Set<String> terms = new LinkedHashSet<>(TextAnalyzer.terms(query));
+        if (terms.isEmpty()) {
+            return null;
+        }
+        IdBitmap result = null;
+        for (String term : terms) {
+            IdBitmap bitmap = postings.get(term);
+            if (bitmap == null) {
+                return new IdBitmap();
+            }
+            result = result == null ? bitmap : result.and(bitmap);
+        }
+        return result;
+    }
+
+    /**
+     * Число минералов с термином
+     */
+    public int documentFrequency(String term) {
+        IdBitmap bitmap = postings.get(term);
+        return bitmap != null ? bitmap.cardinality() : 0;
+    }
+
+    /**
+     * Число различных терминов
+     */
+    public int termCount() {
+        return postings.size();
+    }
+
+    private IdBitmap own(String term) {
+        IdBitmap bitmap = postings.get(term);
+        if (bitmap == null) {
+            bitmap = new IdBitmap();
+            postings.put(term, bitmap);
+            owned.add(term);
+        } else if (owned.add(term)) {
+            bitmap = bitmap.copy();
+            postings.put(term, bitmap);
+        }
+        return bitmap;
+    }
+}
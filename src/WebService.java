@@ -7,6 +7,8 @@ import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.io.File;
 
@@ -53,9 +55,18 @@ public class WebService {
         server.createContext("/minerals", new MineralsHandler());
         server.createContext("/add", new AddMineralHandler());
         server.createContext("/delete", new DeleteMineralHandler());
-        server.createContext("/stats", new StatsHandler());
+        server.createContext("/stats", new ApiStatsHandler());
         server.createContext("/export", new ExportHandler());
         server.createContext("/api/minerals", new ApiMineralsHandler());
+        server.createContext("/api/minerals/", new ApiSimilarMineralsHandler());
+        server.createContext("/api/facets", new ApiFacetsHandler());
+        server.createContext("/api/search", new ApiSearchHandler());
+        server.createContext("/api/suggest", new ApiSuggestHandler());
+        server.createContext("/api/elements", new ApiElementsHandler());
+        server.createContext("/api/changes", new ApiChangesHandler());
+        server.createContext("/api/stats", new ApiStatsHandler());
+        server.createContext("/api/stats/quantiles", new ApiQuantilesHandler());
+        server.createContext("/api/stats/top", new ApiTopValuesHandler());
         server.createContext("/mineral", new MineralDetailsHandler());
         server.createContext("/search", new SearchHandler());
         server.createContext("/filter", new FilterHandler());
@@ -65,7 +76,8 @@ public class WebService {
         server.createContext("/logout", new LogoutHandler());
         server.createContext("/images", new StaticFileHandler());
         
-        server.setExecutor(null);
+        // MineralService читает из неизменяемого снимка, поэтому обработчики можно выполнять параллельно
+        server.setExecutor(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()));
         server.start();
         
         System.out.println("✅ Сервер успешно запущен на порту: " + port);
@@ -95,9 +107,8 @@ public class WebService {
             // 3. Загружаем данные ИЗ БД (не из кода!)
             List<Mineral> dbMinerals = DatabaseService.loadAllFromDatabase();
             
-            // 4. Очищаем и заполняем сервис
-            mineralService.clearCollection();
-            mineralService.addAllMinerals(dbMinerals);
+            // 4. Заменяем содержимое сервиса одной версией (очистка и пакетная загрузка)
+            mineralService.replaceAllMinerals(dbMinerals);
             
             System.out.println("✅ Загружено " + mineralService.getCollectionSize() + " минералов ИЗ SQLite базы");
         }
@@ -192,41 +203,17 @@ private static String getValueCategoryIcon(String category) {
     }
 }
     public static Map<String, Integer> getValueCategoryStats() {
-        Map<String, Integer> stats = new HashMap<>();
-        List<Mineral> minerals = mineralService.getAllMinerals();
-        
-        for (Mineral mineral : minerals) {
-            String category = mineral.getValueCategory();
-            if (category == null || category.trim().isEmpty()) {
-                category = "Не указана";
-            }
-            stats.put(category, stats.getOrDefault(category, 0) + 1);
-        }
-        
-        return stats;
+        return mineralService.getValueCategoryStats();
     }
     public static List<String> getUniqueValueCategories() {
-        return mineralService.getAllMinerals().stream()
-                .map(Mineral::getValueCategory)
-                .filter(category -> category != null && !category.trim().isEmpty())
-                .distinct()
-                .sorted()
-                .collect(Collectors.toList());
+        return mineralService.getAllValueCategories();
     }
     public static int getUniqueLocationsCount() {
-        return (int) mineralService.getAllMinerals().stream()
-                .map(Mineral::getLocation)
-                .filter(location -> location != null && !location.trim().isEmpty())
-                .distinct()
-                .count();
+        return mineralService.getUniqueLocationsCount();
     }
 
     public static int getUniqueColorsCount() {
-        return (int) mineralService.getAllMinerals().stream()
-                .map(Mineral::getColor)
-                .filter(color -> color != null && !color.trim().isEmpty())
-                .distinct()
-                .count();
+        return mineralService.getUniqueColorsCount();
     }
 
 }
@@ -253,15 +240,19 @@ class HandlerUtils {
 
 static String convertMineralsToJson(List<Mineral> minerals) {
     return minerals.stream()
-            .map(m -> String.format(
-                    "{\"id\":%d,\"name\":\"%s\",\"formula\":\"%s\",\"class\":\"%s\",\"color\":\"%s\",\"hardness\":\"%s\",\"location\":\"%s\",\"application\":\"%s\",\"imageUrl\":\"%s\"}",
-                    m.getId(), escapeJson(m.getName()), escapeJson(m.getFormula()),
-                    escapeJson(m.getMineralClass()), escapeJson(m.getColor()),
-                    escapeJson(m.getHardness()), escapeJson(m.getLocation()),
-                    escapeJson(m.getApplication()), escapeJson(m.getImageUrl()))) // ← Добавьте imageUrl
+            .map(HandlerUtils::mineralToJson)
             .collect(Collectors.joining(",", "[", "]"));
 }
 
+static String mineralToJson(Mineral m) {
+    return String.format(
+            "{\"id\":%d,\"name\":\"%s\",\"formula\":\"%s\",\"class\":\"%s\",\"color\":\"%s\",\"hardness\":\"%s\",\"location\":\"%s\",\"application\":\"%s\",\"imageUrl\":\"%s\"}",
+            m.getId(), escapeJson(m.getName()), escapeJson(m.getFormula()),
+            escapeJson(m.getMineralClass()), escapeJson(m.getColor()),
+            escapeJson(m.getHardness()), escapeJson(m.getLocation()),
+            escapeJson(m.getApplication()), escapeJson(m.getImageUrl())); // ← Добавьте imageUrl
+}
+
     static String escapeJson(String text) {
         if (text == null) return "";
         return text.replace("\\", "\\\\")
@@ -271,6 +262,40 @@ static String convertMineralsToJson(List<Mineral> minerals) {
                 .replace("\t", "\\t");
     }
 
+    /**
+     * Ответ 400 с описанием ошибки в JSON: {"error": "..."}
+     */
+    static void sendError(HttpExchange exchange, String message) throws IOException {
+        byte[] error = ("{\"error\":\"" + escapeJson(message) + "\"}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(400, error.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(error);
+        os.close();
+    }
+
+    /**
+     * Целый параметр запроса name в границах [min, max]; без параметра - defaultValue.
+     * Если значение не число или вне границ, отправляет ответ 400 и возвращает null
+     */
+    static Integer intParam(HttpExchange exchange, Map<String, String> params, String name,
+                            int defaultValue, int min, int max) throws IOException {
+        String param = params.get(name);
+        if (param == null) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(param.trim());
+            if (value >= min && value <= max) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // ниже - та же ошибка, что и для значения вне границ
+        }
+        sendError(exchange, name + " должен быть целым числом от " + min + " до " + max);
+        return null;
+    }
+
     static String getSessionId(HttpExchange exchange) {
         String cookie = exchange.getRequestHeaders().getFirst("Cookie");
         if (cookie != null) {
@@ -330,7 +355,9 @@ class HomeHandler implements HttpHandler {
         // Получаем параметры URL для определения текущего состояния
         String query = exchange.getRequestURI().getQuery();
         Map<String, String> params = HandlerUtils.parseQuery(query);
-        String currentSection = params.getOrDefault("section", "all");
+        // Запрос на языке MineralQuery, например "class:Силикаты hardness:>5"
+        String criteriaQuery = params.getOrDefault("q", "").trim();
+        String currentSection = params.getOrDefault("section", criteriaQuery.isEmpty() ? "all" : "search");
         String sortType = params.getOrDefault("sort", "");
         String searchQuery = params.getOrDefault("search", "");
         String filterType = params.getOrDefault("filterType", "");
@@ -363,7 +390,16 @@ class HomeHandler implements HttpHandler {
         }
         // Обработка для секции "Поиск и фильтры" - поиск и фильтрация
         else if (currentSection.equals("search")) {
-            if (!searchQuery.isEmpty()) {
+            if (!criteriaQuery.isEmpty()) {
+                sectionTitle = "🧮 Результаты запроса";
+                try {
+                    mineralsToShow = WebService.mineralService.query(criteriaQuery);
+                    additionalInfo = "<div class='search-info' style='background: #e8f4fd; padding: 1rem; border-radius: 8px; margin-bottom: 1rem; border-left: 4px solid #3498db;'><strong>Запрос:</strong> " + escapeHtml(criteriaQuery) + " | <strong>Найдено:</strong> " + mineralsToShow.size() + " минералов</div>";
+                } catch (IllegalArgumentException e) {
+                    mineralsToShow = new ArrayList<>();
+                    additionalInfo = "<div class='search-info' style='background: #fdecea; padding: 1rem; border-radius: 8px; margin-bottom: 1rem; border-left: 4px solid #e74c3c;'><strong>Ошибка в запросе:</strong> " + escapeHtml(e.getMessage()) + "</div>";
+                }
+            } else if (!searchQuery.isEmpty()) {
                 mineralsToShow = WebService.mineralService.searchByName(searchQuery);
                 sectionTitle = "🔍 Результаты поиска";
                 additionalInfo = "<div class='search-info' style='background: #e8f4fd; padding: 1rem; border-radius: 8px; margin-bottom: 1rem; border-left: 4px solid #3498db;'><strong>Поисковый запрос:</strong> \"" + escapeHtml(searchQuery) + "\" | <strong>Найдено:</strong> " + mineralsToShow.size() + " минералов</div>";
@@ -798,13 +834,24 @@ class HomeHandler implements HttpHandler {
                 "                    <h3 style=\"color: #2c3e50; margin-bottom: 1rem;\">🔎 Поиск по названию</h3>\n" +
                 "                    <div class=\"form-row\">\n" +
                 "                         <div class=\"form-group\">\n" +
-                "                            <input type=\"text\" id=\"searchInput\" placeholder=\"Введите название минерала\" value=\"" + escapeHtml(searchQuery) + "\" class=\"form-input\">\n" +
+                "                            <input type=\"text\" id=\"searchInput\" list=\"searchSuggestions\" autocomplete=\"off\" placeholder=\"Введите название минерала\" value=\"" + escapeHtml(searchQuery) + "\" class=\"form-input\">\n" +
+                "                            <datalist id=\"searchSuggestions\"></datalist>\n" +
                 "                        </div>\n" +
                 "                        <button onclick=\"performSearch()\" class=\"btn-primary\">Найти</button>\n" +
                 "                    </div>\n" +
                 "                </div>\n" +
                 "                \n" +
                 "                <div class=\"search-filter-section\">\n" +
+                "                    <h3 style=\"color: #2c3e50; margin-bottom: 1rem;\">🧮 Запрос по нескольким условиям</h3>\n" +
+                "                    <div class=\"form-row\">\n" +
+                "                         <div class=\"form-group\">\n" +
+                "                            <input type=\"text\" id=\"queryInput\" placeholder=\"Например: class:Силикаты hardness:>5 color:зеленый\" value=\"" + escapeHtml(criteriaQuery) + "\" class=\"form-input\">\n" +
+                "                        </div>\n" +
+                "                        <button onclick=\"performQuery()\" class=\"btn-primary\">Выполнить</button>\n" +
+                "                    </div>\n" +
+                "                </div>\n" +
+                "                \n" +
+                "                <div class=\"search-filter-section\">\n" +
                 "                    <h3 style=\"color: #2c3e50; margin-bottom: 1rem;\">🎨 Фильтрация по свойствам</h3>\n" +
                 "                    <div style=\"display: grid; grid-template-columns: 1fr 1fr 1fr; gap: 1rem;\">\n" +
                 "                        <div>\n" +
@@ -991,6 +1038,15 @@ class HomeHandler implements HttpHandler {
                 "            window.location.href = '/?section=search&search=' + encodeURIComponent(query);\n" +
                 "        }\n" +
                 "\n" +
+                "        function performQuery() {\n" +
+                "            const query = document.getElementById('queryInput').value;\n" +
+                "            if (!query.trim()) {\n" +
+                "                showSection('search');\n" +
+                "                return;\n" +
+                "            }\n" +
+                "            window.location.href = '/?section=search&q=' + encodeURIComponent(query);\n" +
+                "        }\n" +
+                "\n" +
                 "        function performFilter(type) {\n" +
                 "            let value = '';\n" +
                 "            if (type === 'color') {\n" +
@@ -1038,6 +1094,24 @@ class HomeHandler implements HttpHandler {
                 "                searchInput.addEventListener('keypress', function(e) {\n" +
                 "                    if (e.key === 'Enter') performSearch();\n" +
                 "                });\n" +
+                "                // Подсказки при наборе из /api/suggest\n" +
+                "                searchInput.addEventListener('input', function() {\n" +
+                "                    const prefix = this.value.trim();\n" +
+                "                    const list = document.getElementById('searchSuggestions');\n" +
+                "                    if (!prefix) { list.innerHTML = ''; return; }\n" +
+                "                    fetch('/api/suggest?prefix=' + encodeURIComponent(prefix))\n" +
+                "                        .then(response => response.json())\n" +
+                "                        .then(data => {\n" +
+                "                            if (searchInput.value.trim() !== prefix) return;\n" +
+                "                            list.innerHTML = '';\n" +
+                "                            data.suggestions.forEach(s => {\n" +
+                "                                const option = document.createElement('option');\n" +
+                "                                option.value = s.text;\n" +
+                "                                list.appendChild(option);\n" +
+                "                            });\n" +
+                "                        })\n" +
+                "                        .catch(() => {});\n" +
+                "                });\n" +
                 "            }\n" +
                 "            if (colorFilter) {\n" +
                 "                colorFilter.addEventListener('keypress', function(e) {\n" +
@@ -1219,6 +1293,27 @@ class SearchHandler implements HttpHandler {
 
         if ("name".equals(type) && searchQuery != null && !searchQuery.trim().isEmpty()) {
             results = WebService.mineralService.searchByName(searchQuery);
+        } else if ("all".equals(type) && searchQuery != null && !searchQuery.trim().isEmpty()) {
+            // По всем полям с учётом форм слов: /search?type=all&query=черный кварц
+            results = WebService.mineralService.searchInAllFields(searchQuery);
+        } else if ("fuzzy".equals(type) && searchQuery != null && !searchQuery.trim().isEmpty()) {
+            // С опечатками: /search?type=fuzzy&query=Халцидон&maxEdits=2, без maxEdits допуск по длине
+            String maxEdits = params.get("maxEdits");
+            if (maxEdits == null || maxEdits.trim().isEmpty()) {
+                results = WebService.mineralService.searchByNameFuzzy(searchQuery);
+            } else {
+                int edits;
+                try {
+                    edits = Integer.parseInt(maxEdits.trim());
+                } catch (NumberFormatException e) {
+                    edits = -1;
+                }
+                if (edits < 0 || edits > FuzzyNameIndex.MAX_EDITS) {
+                    HandlerUtils.sendError(exchange, "maxEdits должен быть целым числом от 0 до " + FuzzyNameIndex.MAX_EDITS);
+                    return;
+                }
+                results = WebService.mineralService.searchByNameFuzzy(searchQuery, edits);
+            }
         }
 
         String json = HandlerUtils.convertMineralsToJson(results);
@@ -1242,7 +1337,21 @@ class FilterHandler implements HttpHandler {
 
         List<Mineral> results = new ArrayList<>();
 
-        if (filterQuery != null && !filterQuery.trim().isEmpty()) {
+        if ("hardness".equals(type) || "specificGravity".equals(type)) {
+            // Диапазон: /filter?type=hardness&min=5&max=6, любая граница может отсутствовать
+            double min;
+            double max;
+            try {
+                min = parseBound(params.get("min"));
+                max = parseBound(params.get("max"));
+            } catch (IllegalArgumentException e) {
+                HandlerUtils.sendError(exchange, e.getMessage());
+                return;
+            }
+            results = "hardness".equals(type)
+                    ? WebService.mineralService.filterByHardnessRange(min, max)
+                    : WebService.mineralService.filterBySpecificGravityRange(min, max);
+        } else if (filterQuery != null && !filterQuery.trim().isEmpty()) {
             switch (type) {
                 case "color":
                     results = WebService.mineralService.filterByColor(filterQuery);
@@ -1253,6 +1362,14 @@ class FilterHandler implements HttpHandler {
                 case "valueCategory": // Новый тип фильтра
                     results = WebService.mineralService.filterByValueCategory(filterQuery);
                     break;
+                case "query": // Несколько условий сразу, например "class:Силикаты hardness:>5"
+                    try {
+                        results = WebService.mineralService.query(filterQuery);
+                    } catch (IllegalArgumentException e) {
+                        HandlerUtils.sendError(exchange, e.getMessage());
+                        return;
+                    }
+                    break;
             }
         }
 
@@ -1264,6 +1381,18 @@ class FilterHandler implements HttpHandler {
         os.write(json.getBytes());
         os.close();
     }
+
+    // Пустая граница - NaN (открытый край); допускается десятичная запятая
+    private static double parseBound(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Граница диапазона должна быть числом: " + value);
+        }
+    }
 }
 
 class SortHandler implements HttpHandler {
@@ -1427,19 +1556,230 @@ class DeleteMineralHandler implements HttpHandler {
     }
 }
 
-class StatsHandler implements HttpHandler {
+/**
+ * Статистика коллекции ({@link CatalogStatistics}) в JSON.
+ * GET /api/stats - число минералов, сводки по твердости и плотности, счётчики по классам
+ * и месторождениям; /stats отдаёт то же самое. Значения ведутся при изменениях каталога,
+ * поэтому ответ не требует прохода по минералам
+ */
+class ApiStatsHandler implements HttpHandler {
     @Override
     public void handle(HttpExchange exchange) throws IOException {
-        String html = "<div class='stats-grid'>" +
-                "<div class='stat-card'><h3>" + WebService.mineralService.getCollectionSize() + "</h3><p>Всего минералов</p></div>" +
-                "<div class='stat-card'><h3>" + WebService.mineralService.getAllMineralClasses().size() + "</h3><p>Разных классов</p></div>" +
-                "</div>";
+        CatalogStatistics stats = WebService.mineralService.getStatistics();
+        String json = "{\"version\":" + stats.getVersion()
+                + ",\"total\":" + stats.getTotal()
+                + ",\"hardness\":" + summaryToJson(stats.getHardness())
+                + ",\"specificGravity\":" + summaryToJson(stats.getSpecificGravity())
+                + ",\"classes\":" + countsToJson(stats.getClassCounts())
+                + ",\"locations\":" + countsToJson(stats.getLocationCounts()) + "}";
+
+        WebService.sendUtf8Response(exchange, json, "application/json");
+    }
 
-        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
-        exchange.sendResponseHeaders(200, html.getBytes().length);
-        OutputStream os = exchange.getResponseBody();
-        os.write(html.getBytes());
-        os.close();
+    static String summaryToJson(NumericStatistics.Summary summary) {
+        if (summary.getCount() == 0) {
+            return "{\"count\":0,\"min\":null,\"max\":null,\"mean\":null,\"variance\":null,\"stddev\":null}";
+        }
+        return String.format(Locale.ROOT,
+                "{\"count\":%d,\"min\":%.4f,\"max\":%.4f,\"mean\":%.4f,\"variance\":%.4f,\"stddev\":%.4f}",
+                summary.getCount(), summary.getMin(), summary.getMax(), summary.getMean(),
+                summary.getVariance(), summary.getStandardDeviation());
+    }
+
+    static String countsToJson(Map<String, Integer> counts) {
+        return counts.entrySet().stream()
+                .map(entry -> "\"" + HandlerUtils.escapeJson(entry.getKey()) + "\":" + entry.getValue())
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+}
+
+/**
+ * Процентили и гистограммы твердости и плотности по классам ({@link QuantileIndex}).
+ * GET /api/stats/quantiles?property=hardness&class=Силикаты&q=0.1,0.5,0.9&bins=10.
+ * Ответ собирается из готовых эскизов и не зависит от размера каталога; "all" - слияние
+ * эскизов классов. Значения приближённые: погрешность ранга около 1%, после удалений - до 1,4%.
+ * Класс сравнивается без учёта регистра и ё/е; неизвестный класс - ошибка 400, как и неизвестное свойство
+ */
+class ApiQuantilesHandler implements HttpHandler {
+    static final double[] DEFAULT_QUANTILES = {0.1, 0.5, 0.9};
+    static final int DEFAULT_BINS = 10;
+    static final int MAX_BINS = 50;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        List<QuantileIndex.Property> properties = Arrays.asList(QuantileIndex.Property.values());
+        String propertyParam = params.get("property");
+        if (propertyParam != null) {
+            QuantileIndex.Property property = QuantileIndex.Property.fromKey(propertyParam.trim());
+            if (property == null) {
+                HandlerUtils.sendError(exchange, "Неизвестное свойство: " + propertyParam
+                        + " (допустимо: hardness, specificGravity)");
+                return;
+            }
+            properties = Collections.singletonList(property);
+        }
+        double[] quantiles = DEFAULT_QUANTILES;
+        String quantilesParam = params.get("q");
+        if (quantilesParam != null) {
+            quantiles = parseQuantiles(quantilesParam);
+            if (quantiles == null) {
+                HandlerUtils.sendError(exchange, "q должен быть списком чисел от 0 до 1 через запятую");
+                return;
+            }
+        }
+        Integer bins = HandlerUtils.intParam(exchange, params, "bins", DEFAULT_BINS, 1, MAX_BINS);
+        if (bins == null) {
+            return;
+        }
+        String classParam = params.get("class");
+
+        CatalogSnapshot snapshot = WebService.mineralService.getSnapshot();
+        QuantileIndex index = snapshot.indexes().getQuantiles();
+        List<String> classes = new ArrayList<>();
+        if (classParam != null) {
+            String mineralClass = index.className(classParam.trim());
+            if (mineralClass == null) {
+                HandlerUtils.sendError(exchange, "Неизвестный класс: " + classParam);
+                return;
+            }
+            classes.add(mineralClass);
+        } else {
+            for (String mineralClass : index.classes()) {
+                if (!mineralClass.trim().isEmpty()) {
+                    classes.add(mineralClass);
+                }
+            }
+            Collections.sort(classes);
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"version\":").append(snapshot.getVersion()).append(",\"quantiles\":[");
+        for (int i = 0; i < quantiles.length; i++) {
+            json.append(i > 0 ? "," : "").append(quantiles[i]);
+        }
+        json.append("],\"properties\":{");
+        for (int p = 0; p < properties.size(); p++) {
+            QuantileIndex.Property property = properties.get(p);
+            json.append(p > 0 ? "," : "").append('"').append(property.getKey()).append("\":{");
+            if (classParam == null) {
+                json.append("\"all\":").append(sketchToJson(index.merged(property), quantiles, bins)).append(',');
+            }
+            json.append("\"classes\":{");
+            for (int c = 0; c < classes.size(); c++) {
+                String mineralClass = classes.get(c);
+                json.append(c > 0 ? "," : "").append('"').append(HandlerUtils.escapeJson(mineralClass)).append("\":")
+                        .append(sketchToJson(index.sketch(mineralClass, property), quantiles, bins));
+            }
+            json.append("}}");
+        }
+        json.append("}}");
+
+        WebService.sendUtf8Response(exchange, json.toString(), "application/json");
+    }
+
+    // Числа через запятую строго между 0 и 1 или null
+    private static double[] parseQuantiles(String value) {
+        String[] parts = value.split(",");
+        double[] result = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                result[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (!(result[i] > 0 && result[i] < 1)) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static String sketchToJson(QuantileIndex.Distribution sketch, double[] quantiles, int bins) {
+        if (sketch.isEmpty()) {
+            return "{\"count\":0,\"min\":null,\"max\":null,\"values\":{},\"histogram\":null}";
+        }
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT, "{\"count\":%d,\"min\":%.4f,\"max\":%.4f,\"values\":{",
+                sketch.getCount(), sketch.getMin(), sketch.getMax()));
+        for (int i = 0; i < quantiles.length; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append(String.format(Locale.ROOT, "\"p%s\":%.4f", percentile(quantiles[i]),
+                            sketch.quantile(quantiles[i])));
+        }
+        // Равные интервалы от минимума до максимума; последний включает максимум
+        double width = (sketch.getMax() - sketch.getMin()) / bins;
+        int splitCount = width > 0 ? bins - 1 : 0;
+        double[] splits = new double[splitCount];
+        for (int i = 0; i < splitCount; i++) {
+            splits[i] = sketch.getMin() + width * (i + 1);
+        }
+        long[] counts = sketch.histogram(splits);
+        json.append(String.format(Locale.ROOT, "},\"histogram\":{\"from\":%.4f,\"to\":%.4f,\"width\":%.4f,\"counts\":[",
+                sketch.getMin(), sketch.getMax(), width));
+        for (int i = 0; i < counts.length; i++) {
+            json.append(i > 0 ? "," : "").append(counts[i]);
+        }
+        return json.append("]}}").toString();
+    }
+
+    // 0.1 → "10", 0.95 → "95", 0.999 → "99.9"
+    private static String percentile(double quantile) {
+        double percent = Math.round(quantile * 1_000_000) / 10_000.0;
+        return percent == Math.rint(percent) ? Long.toString((long) percent) : Double.toString(percent);
+    }
+}
+
+/**
+ * Самые частые месторождения и цвета ({@link HeavyHitters}).
+ * GET /api/stats/top?facet=location&n=10; без facet - месторождения и цвета.
+ * "count" - оценка сверху, точное число не меньше "min" с вероятностью "confidence";
+ * "error" - наибольшее возможное завышение
+ */
+class ApiTopValuesHandler implements HttpHandler {
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 50;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        List<FacetIndex.Facet> facets = Arrays.asList(FacetIndex.Facet.LOCATION, FacetIndex.Facet.COLOR);
+        String facetParam = params.get("facet");
+        if (facetParam != null) {
+            FacetIndex.Facet facet = FacetIndex.Facet.fromKey(facetParam.trim());
+            if (facet != FacetIndex.Facet.LOCATION && facet != FacetIndex.Facet.COLOR) {
+                HandlerUtils.sendError(exchange, "Неизвестный фасет: " + facetParam + " (допустимо: location, color)");
+                return;
+            }
+            facets = Collections.singletonList(facet);
+        }
+        Integer limit = HandlerUtils.intParam(exchange, params, "n", DEFAULT_LIMIT, 1, MAX_LIMIT);
+        if (limit == null) {
+            return;
+        }
+
+        CatalogSnapshot snapshot = WebService.mineralService.getSnapshot();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"version\":").append(snapshot.getVersion()).append(",\"facets\":{");
+        for (int f = 0; f < facets.size(); f++) {
+            FacetIndex.Facet facet = facets.get(f);
+            HeavyHitters hitters = snapshot.indexes().getHeavyHitters(facet);
+            json.append(f > 0 ? "," : "").append('"').append(facet.getKey()).append("\":")
+                    .append(String.format(Locale.ROOT, "{\"total\":%d,\"error\":%d,\"confidence\":%.4f,\"items\":[",
+                            hitters.getTotal(), hitters.errorBound(), hitters.confidence()));
+            List<HeavyHitters.Entry> entries = hitters.top(limit);
+            for (int i = 0; i < entries.size(); i++) {
+                HeavyHitters.Entry entry = entries.get(i);
+                json.append(i > 0 ? "," : "")
+                        .append("{\"value\":\"").append(HandlerUtils.escapeJson(entry.getValue()))
+                        .append("\",\"count\":").append(entry.getEstimate())
+                        .append(",\"min\":").append(entry.getLowerBound()).append('}');
+            }
+            json.append("]}");
+        }
+        json.append("}}");
+
+        WebService.sendUtf8Response(exchange, json.toString(), "application/json");
     }
 }
 
@@ -1563,7 +1903,280 @@ class ApiMineralsHandler implements HttpHandler {
     }
 }
 
+/**
+ * Похожие минералы.
+ * GET /api/minerals/{id}/similar?k=5 - k ближайших по признакам, k от 1 до 50 (по умолчанию 5)
+ */
+class ApiSimilarMineralsHandler implements HttpHandler {
+    static final int DEFAULT_K = 5;
+    static final int MAX_K = 50;
+
+    private static final String PREFIX = "/api/minerals/";
+    private static final String SUFFIX = "/similar";
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int id = -1;
+        if (path.startsWith(PREFIX) && path.endsWith(SUFFIX) && path.length() > PREFIX.length() + SUFFIX.length()) {
+            try {
+                id = Integer.parseInt(path.substring(PREFIX.length(), path.length() - SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                id = -1;
+            }
+        }
+        if (id < 0 || WebService.mineralService.getMineralById(id) == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        Integer k = HandlerUtils.intParam(exchange, params, "k", DEFAULT_K, 1, MAX_K);
+        if (k == null) {
+            return;
+        }
+
+        String similar = WebService.mineralService.findSimilar(id, k).stream()
+                .map(hit -> String.format(Locale.ROOT, "{\"score\":%.4f,\"mineral\":%s}",
+                        hit.getScore(), HandlerUtils.mineralToJson(hit.getMineral())))
+                .collect(Collectors.joining(","));
+        String json = "{\"id\":" + id + ",\"similar\":[" + similar + "]}";
+
+        WebService.sendUtf8Response(exchange, json, "application/json");
+    }
+}
+
+/**
+ * Ранжированный поиск по всем полям.
+ * GET /api/search?q=черный кварц&limit=10 - лучшие результаты по BM25, limit от 1 до 100 (по умолчанию 10)
+ */
+class ApiSearchHandler implements HttpHandler {
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 100;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        String query = params.getOrDefault("q", "");
+        Integer limit = HandlerUtils.intParam(exchange, params, "limit", DEFAULT_LIMIT, 1, MAX_LIMIT);
+        if (limit == null) {
+            return;
+        }
+
+        List<SearchHit> hits = WebService.mineralService.searchRanked(query, limit);
+        String results = hits.stream()
+                .map(hit -> String.format(Locale.ROOT, "{\"score\":%.4f,\"mineral\":%s}",
+                        hit.getScore(), HandlerUtils.mineralToJson(hit.getMineral())))
+                .collect(Collectors.joining(","));
+        String json = "{\"query\":\"" + HandlerUtils.escapeJson(query) + "\",\"results\":[" + results + "]}";
+
+        WebService.sendUtf8Response(exchange, json, "application/json");
+    }
+}
+
+/**
+ * Подсказки при наборе в строке поиска.
+ * GET /api/suggest?prefix=кв&limit=5 - самые частые названия и месторождения,
+ * limit от 1 до {@link SuggestIndex#MAX_SUGGESTIONS} (по умолчанию все)
+ */
+class ApiSuggestHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        String prefix = params.getOrDefault("prefix", "");
+        Integer limit = HandlerUtils.intParam(exchange, params, "limit", SuggestIndex.MAX_SUGGESTIONS, 1, SuggestIndex.MAX_SUGGESTIONS);
+        if (limit == null) {
+            return;
+        }
+
+        String suggestions = WebService.mineralService.suggest(prefix, limit).stream()
+                .map(suggestion -> "{\"text\":\"" + HandlerUtils.escapeJson(suggestion.getText())
+                        + "\",\"type\":\"" + suggestion.getKind().getKey()
+                        + "\",\"count\":" + suggestion.getCount() + "}")
+                .collect(Collectors.joining(","));
+        String json = "{\"prefix\":\"" + HandlerUtils.escapeJson(prefix) + "\",\"suggestions\":[" + suggestions + "]}";
+
+        WebService.sendUtf8Response(exchange, json, "application/json");
+    }
+}
+
+/**
+ * Поиск по химическому составу формулы.
+ * GET /api/elements?include=Cu,O&exclude=Fe - минералы, в формуле которых есть медь и кислород,
+ * но нет железа; без параметров - элементы каталога с числом минералов
+ */
+class ApiElementsHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        List<String> included = splitElements(params.get("include"));
+        List<String> excluded = splitElements(params.get("exclude"));
+
+        if (included.isEmpty() && excluded.isEmpty()) {
+            String counts = WebService.mineralService.getElementCounts().entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .map(entry -> "\"" + entry.getKey() + "\":" + entry.getValue())
+                    .collect(Collectors.joining(","));
+            WebService.sendUtf8Response(exchange, "{\"elements\":{" + counts + "}}", "application/json");
+            return;
+        }
+
+        List<Mineral> minerals;
+        try {
+            minerals = WebService.mineralService.findByElements(included, excluded);
+        } catch (IllegalArgumentException e) {
+            HandlerUtils.sendError(exchange, e.getMessage());
+            return;
+        }
+        String json = "{\"include\":" + toJsonArray(included)
+                + ",\"exclude\":" + toJsonArray(excluded)
+                + ",\"count\":" + minerals.size()
+                + ",\"minerals\":" + HandlerUtils.convertMineralsToJson(minerals) + "}";
+
+        WebService.sendUtf8Response(exchange, json, "application/json");
+    }
+
+    private static List<String> splitElements(String value) {
+        List<String> elements = new ArrayList<>();
+        if (value != null) {
+            for (String element : value.split(",")) {
+                if (!element.trim().isEmpty()) {
+                    elements.add(element.trim());
+                }
+            }
+        }
+        return elements;
+    }
+
+    private static String toJsonArray(List<String> values) {
+        return values.stream()
+                .map(value -> "\"" + HandlerUtils.escapeJson(value) + "\"")
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+}
+
+/**
+ * Изменения каталога после заданного номера записи журнала ({@link ChangeLog}).
+ * GET /api/changes?since=120&limit=500 - записи 121, 122...; клиент продолжает с "last".
+ * "reset":true - записи уже вытеснены из журнала, каталог нужно перечитать через /api/minerals
+ */
+class ApiChangesHandler implements HttpHandler {
+    static final int DEFAULT_LIMIT = 500;
+    static final int MAX_LIMIT = 5000;
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        long since = 0;
+        String sinceParam = params.get("since");
+        if (sinceParam != null) {
+            try {
+                since = Long.parseLong(sinceParam.trim());
+            } catch (NumberFormatException e) {
+                HandlerUtils.sendError(exchange, "since должен быть номером записи журнала");
+                return;
+            }
+        }
+        Integer limit = HandlerUtils.intParam(exchange, params, "limit", DEFAULT_LIMIT, 1, MAX_LIMIT);
+        if (limit == null) {
+            return;
+        }
+
+        ChangeLog log = WebService.mineralService.getChangeLog();
+        ChangeLog.Changes changes;
+        try {
+            changes = log.since(since, limit);
+        } catch (IllegalArgumentException e) {
+            HandlerUtils.sendError(exchange, e.getMessage());
+            return;
+        }
+        String entries = changes.getChanges().stream()
+                .map(ApiChangesHandler::changeToJson)
+                .collect(Collectors.joining(","));
+        String json = "{\"since\":" + since
+                + ",\"last\":" + changes.getLastSequence()
+                + ",\"reset\":" + changes.isReset()
+                + ",\"more\":" + changes.hasMore()
+                + ",\"changes\":[" + entries + "]}";
+
+        WebService.sendUtf8Response(exchange, json, "application/json");
+    }
+
+    private static String changeToJson(ChangeLog.Change change) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"seq\":").append(change.getSequence())
+                .append(",\"version\":").append(change.getVersion())
+                .append(",\"type\":\"").append(change.getType().getKey()).append('"');
+        switch (change.getType()) {
+            case ADDED:
+                json.append(",\"id\":").append(change.getMineralId())
+                        .append(",\"mineral\":").append(HandlerUtils.mineralToJson(change.getMineral()));
+                break;
+            case REMOVED:
+                json.append(",\"id\":").append(change.getMineralId())
+                        .append(",\"name\":\"").append(HandlerUtils.escapeJson(change.getName())).append('"');
+                break;
+            default:
+                break;
+        }
+        return json.append('}').toString();
+    }
+}
+
+/**
+ * Счётчики значений по классам, месторождениям, цветам и категориям ценности.
+ * GET /api/facets - все фасеты, /api/facets?facet=class - один фасет
+ */
+class ApiFacetsHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Map<String, String> params = HandlerUtils.parseQuery(exchange.getRequestURI().getQuery());
+        FacetIndex.Facet[] requested = FacetIndex.Facet.values();
+        String facetKey = params.get("facet");
+        if (facetKey != null) {
+            FacetIndex.Facet facet = FacetIndex.Facet.fromKey(facetKey.trim());
+            if (facet == null) {
+                String keys = Arrays.stream(FacetIndex.Facet.values())
+                        .map(FacetIndex.Facet::getKey)
+                        .collect(Collectors.joining(", "));
+                HandlerUtils.sendError(exchange, "Неизвестный фасет: " + facetKey + " (допустимо: " + keys + ")");
+                return;
+            }
+            requested = new FacetIndex.Facet[] { facet };
+        }
+
+        // Все счётчики берутся из одного снимка, чтобы total и гистограммы были согласованы
+        CatalogSnapshot snapshot = WebService.mineralService.getSnapshot();
+        FacetIndex facets = snapshot.indexes().getFacets();
+        StringBuilder json = new StringBuilder();
+        json.append("{\"total\":").append(snapshot.size())
+                .append(",\"version\":").append(snapshot.getVersion())
+                .append(",\"facets\":{");
+        for (int i = 0; i < requested.length; i++) {
+            FacetIndex.Facet facet = requested[i];
+            if (i > 0) json.append(',');
+            json.append('"').append(facet.getKey()).append("\":{\"distinct\":")
+                    .append(facets.distinctNonBlankCount(facet))
+                    .append(",\"counts\":{");
+            String counts = facets.histogram(facet).entrySet().stream()
+                    .filter(entry -> !entry.getKey().isEmpty())
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .map(entry -> "\"" + HandlerUtils.escapeJson(entry.getKey()) + "\":" + entry.getValue())
+                    .collect(Collectors.joining(","));
+            json.append(counts).append("}}");
+        }
+        json.append("}}");
+
+        WebService.sendUtf8Response(exchange, json.toString(), "application/json");
+    }
+}
+
 class MineralDetailsHandler implements HttpHandler {
+    private static final int SIMILAR_COUNT = 5;
+
     @Override
     public void handle(HttpExchange exchange) throws IOException {
         String query = exchange.getRequestURI().getQuery();
@@ -1705,6 +2318,12 @@ class MineralDetailsHandler implements HttpHandler {
                 "        .back-button:hover { \n" +
                 "            background: #2980b9; \n" +
                 "        }\n" +
+                "        .similar-link {\n" +
+                "            display: inline-block;\n" +
+                "            margin: 0 1rem 0.5rem 0;\n" +
+                "            color: #2980b9;\n" +
+                "            text-decoration: none;\n" +
+                "        }\n" +
                 "        .empty-field {\n" +
                 "            color: #7f8c8d;\n" +
                 "            font-style: italic;\n" +
@@ -1831,6 +2450,7 @@ class MineralDetailsHandler implements HttpHandler {
                 "                <div class=\"text-content\">" + (mineral.getInterestingFacts().isEmpty() ? "<span class='empty-field'>Интересные факты не указаны</span>" : escapeHtml(mineral.getInterestingFacts()).replace("\n", "<br>")) + "</div>\n" +
                 "            </div>\n" +
                 "            \n" +
+                generateSimilarSection(mineral) +
                 "            <button class=\"back-button\" onclick=\"window.location.href='/'\">⬅️ Назад к каталогу</button>\n" +
                 "        </div>\n" +
                 "    </div>\n" +
@@ -1838,6 +2458,31 @@ class MineralDetailsHandler implements HttpHandler {
                 "</html>";
     }
 
+    // Панель похожих минералов; без соседей не выводится
+    private String generateSimilarSection(Mineral mineral) {
+        List<SearchHit> similar = WebService.mineralService.findSimilar(mineral.getId(), SIMILAR_COUNT);
+        if (similar.isEmpty()) {
+            return "";
+        }
+        StringBuilder html = new StringBuilder();
+        html.append("            <div class=\"text-section\">\n")
+                .append("                <h3>🔗 Похожие минералы</h3>\n")
+                .append("                <div class=\"text-content\">\n");
+        for (SearchHit hit : similar) {
+            Mineral other = hit.getMineral();
+            html.append("                    <a class=\"similar-link\" href=\"/mineral?id=").append(other.getId()).append("\">")
+                    .append(escapeHtml(other.getName()));
+            if (!other.getMineralClass().isEmpty()) {
+                html.append(" <span class='empty-field'>").append(escapeHtml(other.getMineralClass())).append("</span>");
+            }
+            html.append("</a>\n");
+        }
+        html.append("                </div>\n")
+                .append("            </div>\n")
+                .append("            \n");
+        return html.toString();
+    }
+
     private String escapeHtml(String text) {
         if (text == null) return "";
         return text.replace("&", "&amp;")
@@ -1849,8 +2494,8 @@ class MineralDetailsHandler implements HttpHandler {
 }
 
 class AuthService {
-    private Map<String, String> users = new HashMap<>();
-    private Map<String, Boolean> sessions = new HashMap<>();
+    private Map<String, String> users = new ConcurrentHashMap<>();
+    private Map<String, Boolean> sessions = new ConcurrentHashMap<>();
 
     public AuthService() {
         users.put("admin", "admin123");
@@ -1863,12 +2508,7 @@ class AuthService {
             return false;
         }
 
-        if (users.containsKey(username)) {
-            return false;
-        }
-
-        users.put(username, password);
-        return true;
+        return users.putIfAbsent(username, password) == null;
     }
 
     public boolean authenticate(String username, String password) {